@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.util.concurrent.Executor;
+
+import org.scijava.event.EventService;
+import org.scijava.event.SciJavaEvent;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Publishes {@link SciJavaEvent}s off the calling thread, in order, through a
+ * bounded ring buffer.
+ * <p>
+ * Events are handed to the {@link EventService} by a single drain task running
+ * on the given {@link Executor}, so subscribers observe them in the order they
+ * were queued, but never concurrently. When the buffer is full, the oldest
+ * queued event is dropped to make room; for mouse motion this means that the
+ * most recent pointer position always survives.
+ * </p>
+ * <p>
+ * Since subscribers run after the originating AWT event has been handled,
+ * consuming an asynchronously published event has no effect.
+ * </p>
+ */
+public class AWTAsyncEventPublisher {
+
+	/** Default number of events which can be queued. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final EventService eventService;
+	private final Executor executor;
+
+	/** Queued events, oldest first starting at {@link #head}. */
+	private final SciJavaEvent[] ring;
+
+	/** Index of the oldest queued event. */
+	private int head;
+
+	/** Number of queued events. */
+	private int size;
+
+	/** Whether the drain task is scheduled or running. */
+	private boolean draining;
+
+	/** Number of events dropped due to a full buffer. */
+	private long dropped;
+
+	/** Number of events handed to the event service. */
+	private long published;
+
+	private final Runnable drainer = new Runnable() {
+
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+
+	/**
+	 * Creates an asynchronous publisher which drains its queue on the
+	 * {@link ThreadService}'s executor.
+	 */
+	public AWTAsyncEventPublisher(final EventService eventService,
+		final int capacity)
+	{
+		this(eventService, eventService.getContext().getService(
+			ThreadService.class).getExecutorService(), capacity);
+	}
+
+	/**
+	 * Creates an asynchronous publisher which drains its queue on the given
+	 * executor.
+	 */
+	public AWTAsyncEventPublisher(final EventService eventService,
+		final Executor executor, final int capacity)
+	{
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		this.eventService = eventService;
+		this.executor = executor;
+		ring = new SciJavaEvent[capacity];
+	}
+
+	// -- AWTAsyncEventPublisher methods --
+
+	/**
+	 * Queues the given event for publication, dropping the oldest queued event
+	 * if the buffer is full.
+	 */
+	public void publish(final SciJavaEvent event) {
+		final boolean schedule;
+		synchronized (this) {
+			if (size == ring.length) {
+				ring[head] = null;
+				head = next(head);
+				size--;
+				dropped++;
+			}
+			ring[(head + size) % ring.length] = event;
+			size++;
+			schedule = !draining;
+			draining = true;
+		}
+		if (schedule) executor.execute(drainer);
+	}
+
+	/** Gets the maximum number of events which can be queued. */
+	public int getCapacity() {
+		return ring.length;
+	}
+
+	/** Gets the number of events currently waiting to be published. */
+	public synchronized int getQueueDepth() {
+		return size;
+	}
+
+	/** Gets the number of events dropped because the buffer was full. */
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	/** Gets the number of events handed to the event service so far. */
+	public synchronized long getPublishedCount() {
+		return published;
+	}
+
+	// -- Helper methods --
+
+	/** Publishes queued events until the buffer is empty. */
+	private void drain() {
+		while (true) {
+			final SciJavaEvent event = poll();
+			if (event == null) return;
+			try {
+				eventService.publish(event);
+			}
+			catch (final RuntimeException exc) {
+				// NB: A failing subscriber must not stall the remaining events.
+				synchronized (this) {
+					if (size > 0) executor.execute(drainer);
+					else draining = false;
+				}
+				throw exc;
+			}
+		}
+	}
+
+	/**
+	 * Removes the oldest queued event, or marks the drain task as finished if
+	 * there is none.
+	 */
+	private synchronized SciJavaEvent poll() {
+		if (size == 0) {
+			draining = false;
+			return null;
+		}
+		final SciJavaEvent event = ring[head];
+		ring[head] = null;
+		head = next(head);
+		size--;
+		published++;
+		return event;
+	}
+
+	private int next(final int index) {
+		return index + 1 == ring.length ? 0 : index + 1;
+	}
+
+}
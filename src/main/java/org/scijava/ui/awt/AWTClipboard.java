@@ -32,65 +32,767 @@ package org.scijava.ui.awt;
 
 
 
+import java.awt.Graphics;
+import java.awt.Image;
 import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
 import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.FlavorListener;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
 
+import javax.imageio.ImageIO;
+
+import org.scijava.log.LogService;
 import org.scijava.ui.ARGBPlane;
 import org.scijava.ui.SystemClipboard;
 
 /**
  * AWT implementation of the SystemClipboard interface
+ * <p>
+ * The image handed to the system clipboard shares the pixels of the copied
+ * {@link ARGBPlane} where possible, so the plane should not be modified while
+ * it is on the clipboard. The image is built once per copy, and released
+ * together with the plane as soon as another application takes over the
+ * clipboard.
+ * </p>
+ * <p>
+ * Planes larger than the {@link #setSpillThreshold(long) spill threshold} are
+ * copied into a memory-mapped temporary file instead of being kept on the
+ * heap. The copy is made in the background on the fork-join pool, and the
+ * plane is let go once it is complete. PNG data is encoded straight from the
+ * mapped file; only requests for the image flavor rebuild an image on the
+ * heap, which is not kept. The file is unmapped and deleted once the clipboard
+ * is lost.
+ * </p>
+ * <p>
+ * Besides as an image, the pixels are offered as a PNG byte stream and as a
+ * PNG file. The PNG data is only encoded when either of these is first
+ * requested, in parallel on the fork-join pool using {@link AWTPngEncoder}
+ * rather than on the requesting thread, and kept until the clipboard is lost,
+ * when the PNG file and its temporary directory are deleted as well.
+ * </p>
+ * <p>
+ * Images copied by other applications can be pasted as {@link ARGBPlane}s
+ * using {@link #pixelsFromSystemClipboard()}. Whether the clipboard holds an
+ * image is tracked by a listener on the system clipboard's flavors, so no data
+ * is transferred until it is actually pasted.
+ * </p>
  * 
  * @author Barry DeZonia
  *
  */
-public class AWTClipboard implements SystemClipboard, Transferable {
+public class AWTClipboard implements SystemClipboard, Transferable,
+	ClipboardOwner
+{
 	private static java.awt.datatransfer.Clipboard clipboard = null;
-	private ARGBPlane plane;
+
+	/** Flavor of images as PNG byte streams. */
+	public static final DataFlavor PNG_FLAVOR =
+		new DataFlavor("image/png", "PNG image");
+
+	/** Flavors offered for copied pixels. */
+	private static final DataFlavor[] FLAVORS = { DataFlavor.imageFlavor,
+		PNG_FLAVOR, DataFlavor.javaFileListFlavor };
+
+	/** Default size in bytes above which copied pixels are kept off-heap. */
+	public static final long DEFAULT_SPILL_THRESHOLD = 512L << 20;
+
+	/** The contents most recently copied to the clipboard, or null if none. */
+	private Contents contents;
+
+	/** Size in bytes above which copied pixels are kept off-heap. */
+	private long spillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+	/** Listener tracking the system clipboard's flavors, once installed. */
+	private FlavorListener flavorListener;
+
+	/** Whether the system clipboard currently holds a pasteable image. */
+	private volatile boolean imageAvailable;
+
+	/** The clipboard used instead of the system clipboard, or null if none. */
+	private final Clipboard localClipboard;
+
+	/** Logs clipboard errors, or null if none are logged. */
+	private final LogService log;
 	
 	public AWTClipboard() {
-		if (clipboard == null)
-			clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+		this(null);
+	}
+
+	/**
+	 * Creates a clipboard logging its errors to the given log service.
+	 * 
+	 * @param log The log service, or null to not log errors.
+	 */
+	public AWTClipboard(final LogService log) {
+		this(log, null);
+	}
+
+	/** Creates a clipboard using the given clipboard instead of the system's. */
+	AWTClipboard(final LogService log, final Clipboard localClipboard) {
+		// NB: The system clipboard is obtained upon the first copy, so that the
+		// clipboard can be constructed in headless environments.
+		this.log = log;
+		this.localClipboard = localClipboard;
+	}
+
+	// -- AWTClipboard methods --
+
+	/**
+	 * Gets the number of bytes of pixel data currently held for the clipboard,
+	 * counting the copied plane and, if it does not share the plane's pixels,
+	 * the image built from it.
+	 */
+	public synchronized long getMemoryUsage() {
+		return contents == null ? 0 : contents.getMemoryUsage();
+	}
+
+	/**
+	 * Gets the number of bytes of pixel data currently held for the clipboard
+	 * in a memory-mapped temporary file.
+	 */
+	public synchronized long getOffHeapUsage() {
+		return contents == null ? 0 : contents.getOffHeapUsage();
+	}
+
+	/**
+	 * Sets the size in bytes above which copied pixels are moved off the heap,
+	 * into a memory-mapped temporary file.
+	 */
+	public synchronized void setSpillThreshold(final long spillThreshold) {
+		if (spillThreshold < 0) {
+			throw new IllegalArgumentException("Negative spill threshold: " +
+				spillThreshold);
+		}
+		this.spillThreshold = spillThreshold;
+	}
+
+	/** Gets the size in bytes above which copied pixels are moved off-heap. */
+	public synchronized long getSpillThreshold() {
+		return spillThreshold;
+	}
+
+	/**
+	 * Gets whether the system clipboard currently holds an image which can be
+	 * pasted, without transferring it.
+	 */
+	public boolean isImageAvailable() {
+		listenForFlavors();
+		return imageAvailable;
+	}
+
+	/**
+	 * Pastes the image held by the system clipboard.
+	 * 
+	 * @return The pixels of the image, or null if the clipboard holds no image.
+	 * @throws IOException If the image cannot be read.
+	 */
+	public ARGBPlane pixelsFromSystemClipboard() throws IOException {
+		if (!isImageAvailable()) return null;
+		final Transferable t;
+		try {
+			t = systemClipboard().getContents(null);
+		}
+		catch (final IllegalStateException exc) {
+			throw new IOException("The system clipboard is unavailable", exc);
+		}
+		return t == null ? null : toPlane(t);
 	}
 
 	// -- SystemClipboard methods --
 	
 	@Override
 	public void pixelsToSystemClipboard(ARGBPlane argbPlane) {
-		this.plane = argbPlane;
+		final Contents c = new Contents(argbPlane, getSpillThreshold());
+		final Contents replaced;
+		// NB: Publish the contents before handing them over, so that a loss of
+		// ownership right afterwards is not mistaken for an outdated one.
+		synchronized (this) {
+			replaced = contents;
+			contents = c;
+		}
 		try {
-			clipboard.setContents(this, null);
-		} catch (Throwable t) {
-			// do nothing - TODO - do something
+			systemClipboard().setContents(c, this);
+		}
+		catch (final RuntimeException exc) {
+			// NB: The clipboard still holds the replaced contents, if any.
+			synchronized (this) {
+				if (contents == c) contents = replaced;
+			}
+			c.release();
+			if (log != null) {
+				log.error("Cannot copy pixels to the system clipboard", exc);
+			}
+			return;
+		}
+		// NB: No ownership is lost when replacing our own contents.
+		if (replaced != null) replaced.release();
+	}
+
+	// -- ClipboardOwner methods --
+
+	@Override
+	public void lostOwnership(Clipboard clip, Transferable lost) {
+		synchronized (this) {
+			// NB: Contents replaced by a later copy have been released already;
+			// releasing them again does no harm.
+			if (lost == contents) contents = null;
 		}
+		((Contents) lost).release();
 	}
 
 	// -- Transferable methods --
 	
 	@Override
 	public DataFlavor[] getTransferDataFlavors() {
-		return new DataFlavor[] { DataFlavor.imageFlavor };
+		return FLAVORS.clone();
 	}
 
 	@Override
 	public boolean isDataFlavorSupported(DataFlavor flavor) {
-		return DataFlavor.imageFlavor.equals(flavor);
+		return isSupported(flavor);
 	}
 
 	@Override
-	public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
-		if (!isDataFlavorSupported(flavor))
+	public Object getTransferData(DataFlavor flavor)
+		throws UnsupportedFlavorException, IOException
+	{
+		final Contents c;
+		synchronized (this) {
+			c = contents;
+		}
+		if (c == null) {
+			if (!isDataFlavorSupported(flavor))
+				throw new UnsupportedFlavorException(flavor);
+			throw new IOException("The clipboard holds no pixels");
+		}
+		return c.getTransferData(flavor);
+	}
+
+	// -- Helper methods --
+
+	/** Gets the contents most recently copied to the clipboard. */
+	synchronized Transferable getContents() {
+		return contents;
+	}
+
+	/**
+	 * Reads the image offered by the given transferable, preferring
+	 * {@link DataFlavor#imageFlavor} over {@link #PNG_FLAVOR}.
+	 * 
+	 * @return The pixels of the image, or null if no image is offered.
+	 */
+	static ARGBPlane toPlane(final Transferable t) throws IOException {
+		try {
+			if (t.isDataFlavorSupported(DataFlavor.imageFlavor)) {
+				final BufferedImage image =
+					buffered((Image) t.getTransferData(DataFlavor.imageFlavor));
+				if (image != null) return AWTImageTools.toPlane(image);
+			}
+			if (t.isDataFlavorSupported(PNG_FLAVOR)) {
+				try (final InputStream in =
+					(InputStream) t.getTransferData(PNG_FLAVOR))
+				{
+					final BufferedImage image = ImageIO.read(in);
+					if (image == null) {
+						throw new IOException("Invalid PNG data");
+					}
+					return AWTImageTools.toPlane(image);
+				}
+			}
+		}
+		catch (final UnsupportedFlavorException exc) {
+			// NB: The clipboard changed since its flavors were queried.
+		}
+		return null;
+	}
+
+	/**
+	 * Ensures that the given image is a {@link BufferedImage}, drawing it into
+	 * one if necessary.
+	 * 
+	 * @return The buffered image, or null if the image is not loaded.
+	 */
+	private static BufferedImage buffered(final Image image) {
+		if (image instanceof BufferedImage) return (BufferedImage) image;
+		final int width = image.getWidth(null);
+		final int height = image.getHeight(null);
+		if (width <= 0 || height <= 0) return null;
+		// NB: Unlike AWTImageTools.makeBuffered, this works when headless.
+		final BufferedImage result =
+			new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		final Graphics g = result.getGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return result;
+	}
+
+	/**
+	 * Installs the listener tracking the system clipboard's flavors, if not
+	 * installed yet.
+	 */
+	private synchronized void listenForFlavors() {
+		if (flavorListener != null) return;
+		final Clipboard cb = systemClipboard();
+		flavorListener = e -> imageAvailable = hasImage(cb);
+		cb.addFlavorListener(flavorListener);
+		imageAvailable = hasImage(cb);
+	}
+
+	/** Checks the flavors of the given clipboard for a pasteable image. */
+	private static boolean hasImage(final Clipboard cb) {
+		try {
+			return cb.isDataFlavorAvailable(DataFlavor.imageFlavor) ||
+				cb.isDataFlavorAvailable(PNG_FLAVOR);
+		}
+		catch (final IllegalStateException exc) {
+			// NB: Another application holds the clipboard; assume no image.
+			return false;
+		}
+	}
+
+	private static boolean isSupported(final DataFlavor flavor) {
+		for (final DataFlavor f : FLAVORS) {
+			if (f.equals(flavor)) return true;
+		}
+		return false;
+	}
+
+	/** Waits for the given background work on the copied pixels to finish. */
+	private static <T> T await(final CompletableFuture<T> work)
+		throws IOException
+	{
+		try {
+			return work.get();
+		}
+		catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while preparing pixels");
+		}
+		catch (final ExecutionException exc) {
+			throw new IOException("Cannot prepare pixels", exc.getCause());
+		}
+	}
+
+	private Clipboard systemClipboard() {
+		if (localClipboard != null) return localClipboard;
+		synchronized (AWTClipboard.class) {
+			if (clipboard == null)
+				clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+			return clipboard;
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Pixels copied to the clipboard by one call to pixelsToSystemClipboard. */
+	private static class Contents implements Transferable {
+
+		private final int width;
+		private final int height;
+
+		/** The copied plane, or null once spilled or released. */
+		private ARGBPlane plane;
+
+		/** The image built from the plane, or null if not built yet. */
+		private BufferedImage image;
+
+		/** Whether the image shares the pixels of the plane. */
+		private boolean shared;
+
+		/** The off-heap copy of the pixels, or null if kept on the heap. */
+		private SpilledPixels spill;
+
+		/** The copying of the pixels off the heap, completing with null if none. */
+		private final CompletableFuture<SpilledPixels> spilling;
+
+		/** The PNG encoding of the pixels, or null if not started yet. */
+		private CompletableFuture<byte[]> png;
+
+		/** A PNG file holding the image, or null if not written yet. */
+		private File file;
+
+		/** Whether the contents have been released. */
+		private boolean released;
+
+		private Contents(final ARGBPlane plane, final long spillThreshold) {
+			this.plane = plane;
+			width = plane.getWidth();
+			height = plane.getHeight();
+			final long bytes = 4L * width * height;
+			// NB: Copy large planes off the heap in the background, rather than
+			// on the thread copying to the clipboard (usually the EDT).
+			spilling = bytes > spillThreshold ? CompletableFuture.supplyAsync(
+				() -> spill(plane), ForkJoinPool.commonPool()) : CompletableFuture
+					.completedFuture(null);
+		}
+
+		private synchronized long getMemoryUsage() {
+			long bytes = 0;
+			if (plane != null) {
+				final long planeBytes = 4L * width * height;
+				bytes += image == null || shared ? planeBytes : 2 * planeBytes;
+			}
+			if (png != null && png.isDone() && !png.isCompletedExceptionally()) {
+				bytes += png.join().length;
+			}
+			return bytes;
+		}
+
+		private synchronized long getOffHeapUsage() {
+			return spill == null ? 0 : spill.getSize();
+		}
+
+		/**
+		 * Releases the plane, the image built from it, any off-heap copy, any
+		 * encoded PNG data and any PNG file, together with its directory.
+		 */
+		private synchronized void release() {
+			released = true;
+			plane = null;
+			image = null;
+			png = null;
+			if (spill != null) {
+				spill.delete();
+				spill = null;
+			}
+			if (file != null) {
+				final File dir = file.getParentFile();
+				if (!file.delete()) file.deleteOnExit();
+				if (!dir.delete()) dir.deleteOnExit();
+				file = null;
+			}
+		}
+
+		@Override
+		public DataFlavor[] getTransferDataFlavors() {
+			return FLAVORS.clone();
+		}
+
+		@Override
+		public boolean isDataFlavorSupported(final DataFlavor flavor) {
+			return isSupported(flavor);
+		}
+
+		@Override
+		public Object getTransferData(final DataFlavor flavor)
+			throws UnsupportedFlavorException, IOException
+		{
+			if (DataFlavor.imageFlavor.equals(flavor)) {
+				await(spilling);
+				return image();
+			}
+			if (PNG_FLAVOR.equals(flavor)) {
+				return new ByteArrayInputStream(await(png()));
+			}
+			if (DataFlavor.javaFileListFlavor.equals(flavor)) {
+				return Collections.singletonList(file());
+			}
 			throw new UnsupportedFlavorException(flavor);
-		BufferedImage img = new BufferedImage(
-				plane.getWidth(), plane.getHeight(), BufferedImage.TYPE_INT_ARGB);
-		for (int x = 0; x < plane.getWidth(); x++) {
-			for (int y = 0; y < plane.getHeight(); y++) {
-				img.setRGB(x, y, plane.getARGB(x, y));
+		}
+
+		/** Copies the given plane off the heap, unless released meanwhile. */
+		private SpilledPixels spill(final ARGBPlane p) {
+			final SpilledPixels s;
+			try {
+				s = new SpilledPixels(p);
+			}
+			catch (final IOException exc) {
+				// NB: Keep the pixels on the heap instead.
+				return null;
+			}
+			synchronized (this) {
+				if (released) {
+					s.delete();
+					return null;
+				}
+				spill = s;
+				plane = null;
+				return s;
+			}
+		}
+
+		/** Gets the image of the copied pixels. */
+		private synchronized BufferedImage image() throws IOException {
+			// NB: Images of spilled pixels are not kept, as that would defeat the
+			// purpose of spilling them. Image requests are the only ones which
+			// need the pixels on the heap at all.
+			if (spill != null) return spill.toImage();
+			if (image == null) {
+				if (plane == null) {
+					throw new IOException("The copied pixels have been released");
+				}
+				// NB: Share the plane's pixels with the image when possible, rather
+				// than copying them.
+				image = AWTImageTools.wrap(plane);
+				shared = image != null;
+				if (!shared) image = AWTImageTools.toImage(plane);
+			}
+			return image;
+		}
+
+		/** Gets the PNG encoding of the pixels, starting it if necessary. */
+		private synchronized CompletableFuture<byte[]> png() throws IOException {
+			if (released) {
+				throw new IOException("The copied pixels have been released");
+			}
+			if (png == null) {
+				png = spilling.thenApplyAsync(s -> encode(), ForkJoinPool
+					.commonPool());
+			}
+			return png;
+		}
+
+		/**
+		 * Encodes the copied pixels as PNG, reading them row by row from wherever
+		 * they are held.
+		 */
+		private byte[] encode() {
+			final AWTPngEncoder.Rows rows;
+			synchronized (this) {
+				if (spill != null) rows = spill::getRow;
+				else if (plane != null) rows = rows(plane);
+				else throw new IllegalStateException(
+					"The copied pixels have been released");
+			}
+			return new AWTPngEncoder().encode(width, height, rows);
+		}
+
+		/** Gets a PNG file of the image, writing it if necessary. */
+		private File file() throws IOException {
+			final CompletableFuture<byte[]> encoding = png();
+			final byte[] bytes = await(encoding);
+			synchronized (this) {
+				if (png != encoding) {
+					throw new IOException("The copied pixels have been released");
+				}
+				if (file == null) {
+					final File dir = Files.createTempDirectory("scijava-clipboard-")
+						.toFile();
+					dir.deleteOnExit();
+					final File f = new File(dir, "clipboard.png");
+					f.deleteOnExit();
+					Files.write(f.toPath(), bytes);
+					file = f;
+				}
+				return file;
+			}
+		}
+
+		/** Gets the rows of the given plane. */
+		private static AWTPngEncoder.Rows rows(final ARGBPlane plane) {
+			final int w = plane.getWidth();
+			if (plane.getClass() == ARGBPlane.class) {
+				final int[] data = plane.getData();
+				return (y, row) -> System.arraycopy(data, y * w, row, 0, w);
+			}
+			// NB: Subclasses may compute their pixels, so ask for each of them.
+			return (y, row) -> {
+				for (int x = 0; x < w; x++) {
+					row[x] = plane.getARGB(x, y);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Pixels of a plane copied into a memory-mapped temporary file.
+	 * <p>
+	 * The mapped regions are unmapped explicitly upon {@link #delete()}, since
+	 * Windows refuses to delete files which are still mapped. Readers hold a
+	 * read lock while accessing them, so that they are never unmapped under
+	 * their feet.
+	 * </p>
+	 */
+	private static class SpilledPixels {
+
+		/** Maximum number of bytes mapped by one buffer. */
+		private static final int SEGMENT_SIZE = 1 << 30;
+
+		private final int width;
+		private final int height;
+		private final Path path;
+
+		/** Mapped regions of the file, each holding whole rows. */
+		private MappedByteBuffer[] segments;
+
+		/** Guards the mapped regions against being unmapped while read. */
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		/** Number of rows per segment. */
+		private final int segmentRows;
+
+		private SpilledPixels(final ARGBPlane plane) throws IOException {
+			width = plane.getWidth();
+			height = plane.getHeight();
+			segmentRows = Math.max(1, SEGMENT_SIZE / (4 * width));
+			path = Files.createTempFile("scijava-clipboard-", ".argb");
+			try (final FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ, StandardOpenOption.WRITE))
+			{
+				final int count = (height + segmentRows - 1) / segmentRows;
+				segments = new MappedByteBuffer[count];
+				for (int i = 0; i < count; i++) {
+					final long offset = 4L * width * i * segmentRows;
+					final int rows = Math.min(segmentRows, height - i * segmentRows);
+					segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset,
+						4L * width * rows);
+					segments[i].order(ByteOrder.nativeOrder());
+				}
+			}
+			catch (final IOException | RuntimeException exc) {
+				delete();
+				throw exc;
+			}
+			IntStream.range(0, segments.length).parallel().forEach(i -> write(plane,
+				i));
+		}
+
+		private long getSize() {
+			return 4L * width * height;
+		}
+
+		/**
+		 * Reads one row of the spilled pixels.
+		 * 
+		 * @throws IllegalStateException if the pixels have been deleted.
+		 */
+		private void getRow(final int y, final int[] row) {
+			lock.readLock().lock();
+			try {
+				final MappedByteBuffer[] s = segments;
+				if (s == null) {
+					throw new IllegalStateException(
+						"The copied pixels have been released");
+				}
+				final IntBuffer src = s[y / segmentRows].duplicate().order(ByteOrder
+					.nativeOrder()).asIntBuffer();
+				src.position(y % segmentRows * width);
+				src.get(row, 0, width);
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/** Builds a new image from the spilled pixels. */
+		private BufferedImage toImage() throws IOException {
+			lock.readLock().lock();
+			try {
+				final MappedByteBuffer[] s = segments;
+				if (s == null) {
+					throw new IOException("The copied pixels have been released");
+				}
+				final BufferedImage img =
+					new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+				final int[] dest =
+					((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+				IntStream.range(0, s.length).parallel().forEach(i -> {
+					final IntBuffer src = s[i].duplicate().order(ByteOrder
+						.nativeOrder()).asIntBuffer();
+					src.get(dest, i * segmentRows * width, src.remaining());
+				});
+				return img;
+			}
+			finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Unmaps and deletes the file, or schedules its deletion if it cannot be
+		 * deleted yet.
+		 */
+		private void delete() {
+			lock.writeLock().lock();
+			try {
+				if (segments != null) {
+					for (final MappedByteBuffer segment : segments) {
+						if (segment != null) unmap(segment);
+					}
+					segments = null;
+				}
+			}
+			finally {
+				lock.writeLock().unlock();
+			}
+			try {
+				Files.deleteIfExists(path);
+			}
+			catch (final IOException exc) {
+				path.toFile().deleteOnExit();
+			}
+		}
+
+		private void write(final ARGBPlane plane, final int segment) {
+			final IntBuffer dest = segments[segment].duplicate().order(ByteOrder
+				.nativeOrder()).asIntBuffer();
+			final int y0 = segment * segmentRows;
+			final int y1 = Math.min(y0 + segmentRows, height);
+			if (plane.getClass() == ARGBPlane.class) {
+				dest.put(plane.getData(), y0 * width, (y1 - y0) * width);
+				return;
+			}
+			// NB: Subclasses may compute their pixels, so ask for each of them.
+			for (int y = y0; y < y1; y++) {
+				for (int x = 0; x < width; x++) {
+					dest.put(plane.getARGB(x, y));
+				}
+			}
+		}
+
+		/**
+		 * Releases the mapping of the given buffer right away, rather than when it
+		 * is garbage collected. The buffer must not be accessed afterwards.
+		 */
+		private static void unmap(final MappedByteBuffer buffer) {
+			try {
+				try {
+					// NB: Java 9 and later.
+					final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+					final Method invokeCleaner =
+						unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+					final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+					theUnsafe.setAccessible(true);
+					invokeCleaner.invoke(theUnsafe.get(null), buffer);
+				}
+				catch (final NoSuchMethodException exc) {
+					// NB: Java 8.
+					final Method cleaner = buffer.getClass().getMethod("cleaner");
+					cleaner.setAccessible(true);
+					final Object c = cleaner.invoke(buffer);
+					if (c != null) c.getClass().getMethod("clean").invoke(c);
+				}
+			}
+			catch (final ReflectiveOperationException | RuntimeException exc) {
+				// NB: Leave the buffer to the garbage collector.
 			}
 		}
-		return img;
 	}
 }
@@ -32,72 +32,256 @@ package org.scijava.ui.awt;
 
 
 
+import java.awt.Image;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.dnd.InvalidDnDOperationException;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import org.scijava.Context;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 import org.scijava.ui.dnd.AbstractDragAndDropData;
 import org.scijava.ui.dnd.DragAndDropData;
 import org.scijava.ui.dnd.MIMEType;
 
 /**
  * AWT implementation of {@link DragAndDropData}.
+ * <p>
+ * The flavors of the transferable are queried and parsed into
+ * {@link MIMEType}s only once, and {@link #isSupported(MIMEType)} answers are
+ * memoized, so that the same instance can be queried cheaply throughout a
+ * drag.
+ * </p>
+ * <p>
+ * The data of each flavor is transferred at most once, and is subject to a
+ * {@link #setSizeLimit(long) size limit}, so that a huge payload cannot
+ * exhaust the heap. Text and byte data is read through a stream flavor of the
+ * same MIME type where the transferable offers one, so that the limit is
+ * enforced before the data is materialized. Other objects (such as images and
+ * file lists) can only be checked once they have been transferred.
+ * </p>
+ * <p>
+ * AWT only allows the data of other applications to be transferred while a
+ * drop is being handled on the event dispatch thread. Hence
+ * {@link #getDataAsync(MIMEType)} transfers the data on a worker thread only
+ * for {@link #isLocalTransfer() local transfers}, from within the same JVM;
+ * otherwise it transfers the data right away, on the calling thread.
+ * </p>
  * 
  * @author Curtis Rueden
  */
 public class AWTDragAndDropData extends AbstractDragAndDropData {
 
+	/** Default maximum size of transferred data, in bytes. */
+	public static final long DEFAULT_SIZE_LIMIT = 256L << 20;
+
 	private final Transferable t;
 
+	/** Flavors of the transferable, or null if not yet queried. */
+	private DataFlavor[] flavors;
+
+	/** MIME types of the flavors, parsed once. */
+	private MIMEType[] mimeTypes;
+
+	/** Memoized {@link #isSupported(MIMEType)} answers. */
+	private final Map<MIMEType, Boolean> supported = new ConcurrentHashMap<>();
+
+	/** Asynchronous transfers, by flavor. */
+	private final Map<DataFlavor, CompletableFuture<Object>> transfers =
+		new ConcurrentHashMap<>();
+
+	/** Maximum size of transferred data, in bytes. */
+	private volatile long sizeLimit = DEFAULT_SIZE_LIMIT;
+
+	/** Whether the data comes from within the same JVM. */
+	private volatile boolean localTransfer;
+
+	/** Sniffer used by {@link #getFileTypes()}, or null if none. */
+	private volatile AWTFileSniffer fileSniffer;
+
 	@Parameter(required = false)
 	private LogService log;
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	public AWTDragAndDropData(final Context context, final Transferable t) {
 		setContext(context);
 		this.t = t;
 	}
 
+	// -- AWTDragAndDropData methods --
+
+	/** Gets the transferable providing the data. */
+	public Transferable getTransferable() {
+		return t;
+	}
+
+	/**
+	 * Gets whether the data comes from within the same JVM, and can thus be
+	 * transferred at any time.
+	 */
+	public boolean isLocalTransfer() {
+		return localTransfer;
+	}
+
+	/**
+	 * Gets the data of the given MIME type, transferring it on a worker thread
+	 * for {@link #isLocalTransfer() local transfers}, or right away otherwise.
+	 * <p>
+	 * Each flavor is transferred at most once; later calls share the same
+	 * transfer. Streams are read into memory, so that the result remains usable
+	 * once the drop has completed, and each call gets its own stream (or buffer)
+	 * over that memory, positioned at the start. If the data exceeds the
+	 * {@link #setSizeLimit(long) size limit}, the future completes
+	 * exceptionally with an {@link IOException}.
+	 * </p>
+	 */
+	public CompletableFuture<Object> getDataAsync(final MIMEType mimeType) {
+		final DataFlavor flavor = flavor(mimeType);
+		if (flavor == null) {
+			final CompletableFuture<Object> failed = new CompletableFuture<>();
+			failed.completeExceptionally(new IllegalArgumentException(
+				"Unsupported MIME type: " + mimeType));
+			return failed;
+		}
+		final CompletableFuture<Object> transfer = transfers.get(flavor);
+		if (transfer != null) return transfer.thenApply(
+			AWTDragAndDropData::copy);
+		final CompletableFuture<Object> started = new CompletableFuture<>();
+		final CompletableFuture<Object> existing =
+			transfers.putIfAbsent(flavor, started);
+		if (existing != null) return existing.thenApply(
+			AWTDragAndDropData::copy);
+		if (localTransfer) executor().execute(() -> transfer(flavor, started));
+		else transfer(flavor, started);
+		return started.thenApply(AWTDragAndDropData::copy);
+	}
+
+	/**
+	 * Classifies the dragged files by their content.
+	 * <p>
+	 * The file list is transferred like any other data, so this only works once
+	 * AWT makes the list available. For drags from other applications, that is
+	 * only while the drop is being handled, so during {@code dragEnter} and
+	 * {@code dragOver} this returns an empty map; only local transfers can be
+	 * classified before the drop.
+	 * </p>
+	 * 
+	 * @return The classification of each file, as given by
+	 *         {@link AWTFileSniffer#classify(List)}, or an empty map if the data
+	 *         is no file list, or the list is not available yet.
+	 */
+	public Map<File, String> sniffFiles(final AWTFileSniffer sniffer) {
+		final DataFlavor flavor = DataFlavor.javaFileListFlavor;
+		if (!t.isDataFlavorSupported(flavor)) return Collections.emptyMap();
+		final Object files = getData(new MIMEType(flavor.getMimeType()));
+		if (!(files instanceof List)) return Collections.emptyMap();
+		@SuppressWarnings("unchecked")
+		final List<File> list = (List<File>) files;
+		return sniffer.classify(list);
+	}
+
+	/**
+	 * Classifies the dragged files by their content, using the file sniffer of
+	 * the drop target.
+	 * 
+	 * @return The classification of each file, or an empty map if the drop
+	 *         target has no file sniffer; see {@link #sniffFiles(AWTFileSniffer)}.
+	 * @see AWTDropTargetEventDispatcher#setFileSniffer(AWTFileSniffer)
+	 */
+	public Map<File, String> getFileTypes() {
+		final AWTFileSniffer sniffer = fileSniffer;
+		return sniffer == null ? Collections.<File, String> emptyMap()
+			: sniffFiles(sniffer);
+	}
+
+	/** Sets the maximum size of transferred data, in bytes. */
+	public void setSizeLimit(final long sizeLimit) {
+		if (sizeLimit < 0) {
+			throw new IllegalArgumentException("Negative size limit: " + sizeLimit);
+		}
+		this.sizeLimit = sizeLimit;
+	}
+
+	/** Gets the maximum size of transferred data, in bytes. */
+	public long getSizeLimit() {
+		return sizeLimit;
+	}
+
 	// -- DragAndDrop methods --
 
 	@Override
 	public boolean isSupported(final MIMEType mimeType) {
-		for (final DataFlavor flavor : t.getTransferDataFlavors()) {
-			if (mimeType.isCompatible(new MIMEType(flavor.getMimeType()))) {
-				return true;
-			}
-		}
-		return false;
+		final Boolean answer = supported.get(mimeType);
+		if (answer != null) return answer;
+		final boolean result = flavor(mimeType) != null;
+		supported.put(mimeType, result);
+		return result;
 	}
 
 	@Override
 	public Object getData(final MIMEType mimeType) {
-		for (final DataFlavor flavor : t.getTransferDataFlavors()) {
-			if (mimeType.isCompatible(new MIMEType(flavor.getMimeType()))) {
-				try {
-					return t.getTransferData(flavor);
+		final DataFlavor flavor = flavor(mimeType);
+		if (flavor != null) {
+			CompletableFuture<Object> transfer = transfers.get(flavor);
+			if (transfer == null) {
+				final CompletableFuture<Object> started = new CompletableFuture<>();
+				transfer = transfers.putIfAbsent(flavor, started);
+				if (transfer == null) {
+					transfer(flavor, started);
+					transfer = started;
 				}
-				catch (final UnsupportedFlavorException exc) {
+			}
+			if (!transfer.isDone()) {
+				// NB: Do not wait for a pending local transfer here, since it may
+				// itself need the AWT event dispatch thread to make progress.
+				final CompletableFuture<Object> direct = new CompletableFuture<>();
+				transfer(flavor, direct);
+				transfer = direct;
+			}
+			try {
+				return copy(transfer.join());
+			}
+			catch (final CompletionException exc) {
+				final Throwable cause = exc.getCause();
+				if (cause instanceof UnsupportedFlavorException) {
 					throw new IllegalArgumentException("Unsupported MIME type: " +
-						mimeType, exc);
+						mimeType, cause);
 				}
-				catch (final IOException exc) {
-					if (log != null) log.error("Drag-and-drop error", exc);
-				}
-				catch (final InvalidDnDOperationException exc) {
+				if (cause instanceof InvalidDnDOperationException) {
 					// NB: This exception is thrown when the data is requested at an
 					// inappropriate time, typically too early in the drag-and-drop
-					// process such as during a dragEnter event. In that case, we simply
-					// return null for now.
+					// process such as during a dragEnter event. In that case, we
+					// simply return null for now.
 					//
 					// ImageJ's drag-and-drop layer does its best to deal with it.
 					return null;
 				}
+				if (log != null) log.error("Drag-and-drop error", cause);
+				return null;
 			}
 		}
 		throw new IllegalArgumentException("Unsupported MIME type: " + mimeType);
@@ -105,11 +289,228 @@ public class AWTDragAndDropData extends AbstractDragAndDropData {
 
 	@Override
 	public ArrayList<MIMEType> getMIMETypes() {
-		final ArrayList<MIMEType> mimeTypes = new ArrayList<MIMEType>();
-		for (final DataFlavor flavor : t.getTransferDataFlavors()) {
-			mimeTypes.add(new MIMEType(flavor.getMimeType()));
+		parseFlavors();
+		final ArrayList<MIMEType> list = new ArrayList<MIMEType>(mimeTypes.length);
+		for (final MIMEType mimeType : mimeTypes) {
+			list.add(mimeType);
+		}
+		return list;
+	}
+
+	// -- Helper methods --
+
+	/** Sets whether the data comes from within the same JVM. */
+	void setLocalTransfer(final boolean localTransfer) {
+		this.localTransfer = localTransfer;
+	}
+
+	/** Sets the sniffer used by {@link #getFileTypes()}. */
+	void setFileSniffer(final AWTFileSniffer fileSniffer) {
+		this.fileSniffer = fileSniffer;
+	}
+
+	private Executor executor() {
+		return threadService == null ? ForkJoinPool.commonPool() : threadService
+			.getExecutorService();
+	}
+
+	/** Transfers the data of the given flavor, enforcing the size limit. */
+	private void transfer(final DataFlavor flavor,
+		final CompletableFuture<Object> transfer)
+	{
+		try {
+			transfer.complete(fetch(flavor));
+		}
+		catch (final InvalidDnDOperationException exc) {
+			// NB: The data is not available yet, typically because the drop has not
+			// happened yet. Forget the failed transfer, so that it can be retried.
+			transfers.remove(flavor, transfer);
+			transfer.completeExceptionally(exc);
+		}
+		catch (final UnsupportedFlavorException | IOException |
+			RuntimeException exc)
+		{
+			transfer.completeExceptionally(exc);
+		}
+	}
+
+	/**
+	 * Gets the data of the given flavor, enforcing the size limit. Text and
+	 * bytes are read through a stream flavor of the same MIME type if there is
+	 * one, and converted to the flavor's representation class afterwards.
+	 */
+	private Object fetch(final DataFlavor flavor)
+		throws UnsupportedFlavorException, IOException
+	{
+		final Class<?> c = flavor.getRepresentationClass();
+		if (c == String.class || c == CharBuffer.class || c == char[].class) {
+			final DataFlavor reader = streamFlavor(flavor, Reader.class);
+			if (reader != null) {
+				final String text = read((Reader) t.getTransferData(reader));
+				if (c == String.class) return text;
+				if (c == CharBuffer.class) return CharBuffer.wrap(text);
+				return text.toCharArray();
+			}
+		}
+		else if (c == byte[].class || c == ByteBuffer.class) {
+			final DataFlavor stream = streamFlavor(flavor, InputStream.class);
+			if (stream != null) {
+				final byte[] bytes = read((InputStream) t.getTransferData(stream));
+				return c == byte[].class ? bytes : ByteBuffer.wrap(bytes);
+			}
+		}
+		return limit(t.getTransferData(flavor));
+	}
+
+	/**
+	 * Finds a flavor of the same MIME type as the given one, whose
+	 * representation class is the given stream class. Byte streams must also
+	 * use the same charset.
+	 */
+	private DataFlavor streamFlavor(final DataFlavor flavor,
+		final Class<?> streamClass)
+	{
+		parseFlavors();
+		final boolean bytes = streamClass == InputStream.class;
+		for (final DataFlavor f : flavors) {
+			if (f.getRepresentationClass() != streamClass || !f.isMimeTypeEqual(
+				flavor)) continue;
+			if (bytes && !Objects.equals(f.getParameter("charset"), flavor
+				.getParameter("charset"))) continue;
+			return f;
+		}
+		return null;
+	}
+
+	/** Reads the given stream into memory, enforcing the size limit. */
+	private byte[] read(final InputStream stream) throws IOException {
+		final long limit = sizeLimit;
+		try (final InputStream in = stream) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buf = new byte[8192];
+			long total = 0;
+			int r;
+			while ((r = in.read(buf)) >= 0) {
+				total += r;
+				checkSize(total, limit);
+				out.write(buf, 0, r);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/** Reads the given reader into memory, enforcing the size limit. */
+	private String read(final Reader reader) throws IOException {
+		final long limit = sizeLimit;
+		try (final Reader in = reader) {
+			final StringBuilder out = new StringBuilder();
+			final char[] buf = new char[8192];
+			long total = 0;
+			int r;
+			while ((r = in.read(buf)) >= 0) {
+				total += 2L * r;
+				checkSize(total, limit);
+				out.append(buf, 0, r);
+			}
+			return out.toString();
+		}
+	}
+
+	/**
+	 * Checks the size of the given data against the size limit, reading streams
+	 * into memory along the way.
+	 */
+	private Object limit(final Object data) throws IOException {
+		final long limit = sizeLimit;
+		if (data instanceof InputStream) {
+			return new Stream(read((InputStream) data));
+		}
+		if (data instanceof Reader) {
+			return new Stream(read((Reader) data));
+		}
+		if (data instanceof CharSequence) {
+			checkSize(2L * ((CharSequence) data).length(), limit);
+		}
+		else if (data instanceof byte[]) {
+			checkSize(((byte[]) data).length, limit);
+		}
+		else if (data instanceof ByteBuffer) {
+			checkSize(((ByteBuffer) data).remaining(), limit);
+		}
+		else if (data instanceof RenderedImage) {
+			final RenderedImage image = (RenderedImage) data;
+			checkSize(4L * image.getWidth() * image.getHeight(), limit);
+		}
+		else if (data instanceof Image) {
+			final Image image = (Image) data;
+			checkSize(4L * image.getWidth(null) * image.getHeight(null), limit);
+		}
+		return data;
+	}
+
+	/**
+	 * Gets a copy of transferred data which can be consumed without affecting
+	 * other callers: a new stream for streamed data, and a new view for
+	 * buffers.
+	 */
+	private static Object copy(final Object data) {
+		if (data instanceof Stream) return ((Stream) data).open();
+		if (data instanceof ByteBuffer) return ((ByteBuffer) data).duplicate();
+		if (data instanceof CharBuffer) return ((CharBuffer) data).duplicate();
+		return data;
+	}
+
+	private static void checkSize(final long size, final long limit)
+		throws IOException
+	{
+		if (size <= limit) return;
+		throw new IOException("Drag-and-drop data exceeds size limit of " +
+			limit + " bytes");
+	}
+
+	/** Queries the flavors of the transferable and parses them, once. */
+	private synchronized void parseFlavors() {
+		if (flavors != null) return;
+		final DataFlavor[] f = t.getTransferDataFlavors();
+		final MIMEType[] m = new MIMEType[f.length];
+		for (int i = 0; i < f.length; i++) {
+			m[i] = new MIMEType(f[i].getMimeType());
+		}
+		mimeTypes = m;
+		flavors = f;
+	}
+
+	/** Gets the first flavor compatible with the given MIME type, or null. */
+	private DataFlavor flavor(final MIMEType mimeType) {
+		parseFlavors();
+		for (int i = 0; i < flavors.length; i++) {
+			if (mimeType.isCompatible(mimeTypes[i])) return flavors[i];
+		}
+		return null;
+	}
+
+	// -- Helper classes --
+
+	/** Streamed data, read into memory and reopened for each caller. */
+	private static class Stream {
+
+		private final byte[] bytes;
+		private final String text;
+
+		private Stream(final byte[] bytes) {
+			this.bytes = bytes;
+			text = null;
+		}
+
+		private Stream(final String text) {
+			bytes = null;
+			this.text = text;
+		}
+
+		private Object open() {
+			return bytes == null ? new StringReader(text)
+				: new ByteArrayInputStream(bytes);
 		}
-		return mimeTypes;
 	}
 
 }
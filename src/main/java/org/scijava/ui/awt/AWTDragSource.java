@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.Component;
+import java.awt.dnd.DnDConstants;
+import java.awt.dnd.DragGestureEvent;
+import java.awt.dnd.DragGestureListener;
+import java.awt.dnd.DragGestureRecognizer;
+import java.awt.dnd.DragSource;
+import java.awt.dnd.DragSourceAdapter;
+import java.awt.dnd.DragSourceDropEvent;
+import java.awt.dnd.InvalidDnDOperationException;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.scijava.Context;
+import org.scijava.display.Display;
+import org.scijava.event.EventService;
+
+/**
+ * Lets users drag the contents of a display into other applications.
+ * <p>
+ * A drag gesture on a registered component starts a drag carrying an
+ * {@link AWTImageTransferable}, offering the display's image as an image, a
+ * PNG file and text. Starting the drag renders nothing: the image is only
+ * rendered when the drop target asks for it, and is kept until the drag ends.
+ * </p>
+ * <p>
+ * The drag source refers to its display only weakly, and so does the
+ * transferable of each drag: the renderer is handed the display when asked
+ * for the image, rather than capturing it.
+ * </p>
+ */
+public class AWTDragSource extends DragSourceAdapter implements
+	DragGestureListener
+{
+
+	private final WeakReference<Display<?>> display;
+	private final Function<? super Display<?>, BufferedImage> renderer;
+
+	/** Open registrations of the drag source. */
+	private final Set<AWTRegistration> registrations = Collections
+		.synchronizedSet(Collections.newSetFromMap(
+			new IdentityHashMap<AWTRegistration, Boolean>()));
+
+	/**
+	 * Creates a drag source for the given display.
+	 * 
+	 * @param display The display whose contents are dragged.
+	 * @param renderer Renders the contents of the display it is given, when a
+	 *          drop target asks for them. It should not hold on to the display
+	 *          itself, so that the display can be collected once closed.
+	 */
+	public AWTDragSource(final Display<?> display,
+		final Function<? super Display<?>, BufferedImage> renderer)
+	{
+		this.display = new WeakReference<Display<?>>(display);
+		this.renderer = renderer;
+	}
+
+	// -- AWTDragSource methods --
+
+	/**
+	 * Lets drag gestures on the given component start drags.
+	 * <p>
+	 * To stop recognizing drag gestures again, use {@link #attach(Component)}
+	 * instead.
+	 * </p>
+	 */
+	public void register(final Component c) {
+		recognize(c);
+	}
+
+	/**
+	 * Lets drag gestures on the given component start drags, like
+	 * {@link #register(Component)}, returning a handle which stops recognizing
+	 * drag gestures again when closed. The handle closes automatically once the
+	 * display's window is closed.
+	 * 
+	 * @return The handle of the registration.
+	 */
+	public AWTRegistration attach(final Component c) {
+		final DragGestureRecognizer recognizer = recognize(c);
+		final Display<?> d = getDisplay();
+		final Context context = d == null ? null : d.getContext();
+		final EventService eventService =
+			context == null ? null : context.getService(EventService.class);
+		final AWTRegistration registration = new AWTRegistration(c, d,
+			eventService, (r, component) -> {
+				registrations.remove(r);
+				recognizer.removeDragGestureListener(this);
+				recognizer.setComponent(null);
+			});
+		registrations.add(registration);
+		return registration.open();
+	}
+
+	/**
+	 * Gets the display whose contents are dragged, or null if it is no longer
+	 * available.
+	 */
+	public Display<?> getDisplay() {
+		return display.get();
+	}
+
+	// -- DragGestureListener methods --
+
+	@Override
+	public void dragGestureRecognized(final DragGestureEvent e) {
+		final Display<?> d = getDisplay();
+		if (d == null) return;
+		final AWTImageTransferable transferable =
+			new AWTImageTransferable(d.getName(), this::render);
+		try {
+			e.startDrag(DragSource.DefaultCopyDrop, transferable, this);
+		}
+		catch (final InvalidDnDOperationException exc) {
+			// NB: Another drag is already in progress.
+		}
+	}
+
+	// -- DragSourceListener methods --
+
+	@Override
+	public void dragDropEnd(final DragSourceDropEvent e) {
+		final Object transferable = e.getDragSourceContext().getTransferable();
+		if (transferable instanceof AWTImageTransferable) {
+			((AWTImageTransferable) transferable).release();
+		}
+	}
+
+	// -- Helper methods --
+
+	private DragGestureRecognizer recognize(final Component c) {
+		return DragSource.getDefaultDragSource().createDefaultDragGestureRecognizer(
+			c, DnDConstants.ACTION_COPY, this);
+	}
+
+	/**
+	 * Renders the display's contents, or returns null if the display is no
+	 * longer available.
+	 */
+	private BufferedImage render() {
+		final Display<?> d = getDisplay();
+		return d == null ? null : renderer.apply(d);
+	}
+
+}
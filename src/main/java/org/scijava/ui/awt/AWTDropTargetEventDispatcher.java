@@ -33,18 +33,31 @@ package org.scijava.ui.awt;
 
 import java.awt.Component;
 import java.awt.Point;
+import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.dnd.DnDConstants;
 import java.awt.dnd.DropTarget;
 import java.awt.dnd.DropTargetDragEvent;
 import java.awt.dnd.DropTargetDropEvent;
 import java.awt.dnd.DropTargetEvent;
 import java.awt.dnd.DropTargetListener;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.scijava.Context;
 import org.scijava.display.Display;
 import org.scijava.event.EventService;
 import org.scijava.input.InputModifiers;
 import org.scijava.input.InputService;
+import org.scijava.log.LogService;
 import org.scijava.ui.dnd.DragAndDropData;
 import org.scijava.ui.dnd.DragAndDropService;
 import org.scijava.ui.dnd.event.DragAndDropEvent;
@@ -56,52 +69,337 @@ import org.scijava.ui.dnd.event.DropEvent;
 /**
  * Rebroadcasts AWT {@link DropTargetEvent}s as ImageJ {@link DragAndDropEvent}
  * s.
+ * <p>
+ * Each drag over the component is tracked as a session, from
+ * {@code dragEnter} until {@code drop} or {@code dragExit}. All events of the
+ * session share the same {@link AWTDragAndDropData}, and the acceptance
+ * decision made upon {@code dragEnter} is applied to every {@code dragOver}.
+ * </p>
+ * <p>
+ * AWT calls {@code dragOver} repeatedly, even while the pointer is stationary.
+ * By setting a {@link #setDragOverThreshold(int) distance threshold} and a
+ * {@link #setDragOverInterval(int) minimum interval}, {@link DragOverEvent}s
+ * are only published once the pointer has moved far enough, or enough time has
+ * passed since the last published one.
+ * </p>
+ * <p>
+ * With {@link #setStreamingDrops(boolean) streaming drops} enabled, dropped
+ * file lists of at least {@link #setStreamingThreshold(int) streaming
+ * threshold} files are acknowledged immediately, and then handed to the
+ * {@link DragAndDropService} in chunks by an {@link AWTFileDropTask}, so that
+ * dropping thousands of files does not block the AWT event dispatch thread.
+ * Smaller file lists are published as a {@link DropEvent}, as usual.
+ * </p>
+ * <p>
+ * The data of a drop is transferred by the {@link DropEvent} handlers, while
+ * the event is published, and the drop is completed right afterwards. Each
+ * flavor is transferred only once, subject to the
+ * {@link AWTDragAndDropData#setSizeLimit(long) size limit}. Only drops from
+ * within the same JVM can be transferred in the background, via
+ * {@link AWTDragAndDropData#getDataAsync}.
+ * </p>
  * 
  * @author Curtis Rueden
  */
 public class AWTDropTargetEventDispatcher implements DropTargetListener {
 
-	private final Display<?> display;
+	/** Default minimum number of dropped files which are streamed. */
+	public static final int DEFAULT_STREAMING_THRESHOLD = 64;
+
+	/** Display associated with the dispatched events, or null if none. */
+	private final WeakReference<Display<?>> display;
 
 	private final EventService eventService;
 
+	/** The drag in progress, or null if none. */
+	private DragSession dragSession;
+
+	/** Distance the pointer must move to publish a drag over event. */
+	private int dragOverThreshold;
+
+	/** Time after which a drag over event is published regardless, in ms. */
+	private int dragOverInterval;
+
+	/** Number of drag over events published so far. */
+	private final LongAdder publishedDragOvers = new LongAdder();
+
+	/** Number of drag over events suppressed so far. */
+	private final LongAdder suppressedDragOvers = new LongAdder();
+
+	/** Whether dropped file lists are handled by an AWTFileDropTask. */
+	private boolean streamingDrops;
+
+	/** Minimum number of dropped files handled by an AWTFileDropTask. */
+	private int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+
+	/** Number of files handed to the drag-and-drop service at once. */
+	private int dropChunkSize = AWTFileDropTask.DEFAULT_CHUNK_SIZE;
+
+	/** Maximum number of file chunks handled concurrently. */
+	private int dropConcurrency = Runtime.getRuntime().availableProcessors();
+
+	/** Sniffer classifying dragged files, or null if none. */
+	private volatile AWTFileSniffer fileSniffer;
+
+	/** The most recently started file drop task, or null if none. */
+	private volatile AWTFileDropTask dropTask;
+
+	/** Open registrations of the dispatcher. */
+	private final Set<AWTRegistration> registrations = Collections
+		.synchronizedSet(Collections.newSetFromMap(
+			new IdentityHashMap<AWTRegistration, Boolean>()));
+
 	/** Creates an AWT drag-and-drop event dispatcher for the given display. */
 	public AWTDropTargetEventDispatcher(final Display<?> display,
 		final EventService eventService)
 	{
-		this.display = display;
+		this.display = display == null ? null : new WeakReference<>(display);
 		this.eventService = eventService;
 	}
 
 	// -- AWTDropTargetEventDispatcher methods --
 
+	/**
+	 * Makes the given component a drop target dispatching its events. To remove
+	 * the drop target again, use {@link #attach(Component)}.
+	 */
 	public void register(final Component c) {
 		new DropTarget(c, this);
 	}
 
+	/**
+	 * Makes the given component a drop target dispatching its events, like
+	 * {@link #register(Component)}, returning a handle which removes the drop
+	 * target again when closed. The handle closes automatically once the
+	 * display's window is closed.
+	 * 
+	 * @return The handle of the registration.
+	 */
+	public AWTRegistration attach(final Component c) {
+		final DropTarget dropTarget = new DropTarget(c, this);
+		final AWTRegistration registration = new AWTRegistration(c, getDisplay(),
+			eventService, (r, component) -> {
+				registrations.remove(r);
+				dropTarget.removeDropTargetListener(this);
+				if (component.getDropTarget() == dropTarget) {
+					component.setDropTarget(null);
+				}
+			});
+		registrations.add(registration);
+		return registration.open();
+	}
+
+	/**
+	 * Sets the distance the pointer must move, in pixels, for a
+	 * {@link DragOverEvent} to be published before the
+	 * {@link #setDragOverInterval(int) drag over interval} has passed.
+	 * <p>
+	 * A drag over event is published when the pointer has moved more than the
+	 * threshold since the last published event, or when the interval has passed.
+	 * With both at 0 (the default), every drag over event is published.
+	 * </p>
+	 */
+	public void setDragOverThreshold(final int threshold) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Negative threshold: " + threshold);
+		}
+		dragOverThreshold = threshold;
+	}
+
+	/** Gets the distance the pointer must move to publish a drag over event. */
+	public int getDragOverThreshold() {
+		return dragOverThreshold;
+	}
+
+	/**
+	 * Sets the time in milliseconds after which a {@link DragOverEvent} is
+	 * published even if the pointer has not moved beyond the
+	 * {@link #setDragOverThreshold(int) drag over threshold}.
+	 */
+	public void setDragOverInterval(final int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException("Negative interval: " + interval);
+		}
+		dragOverInterval = interval;
+	}
+
+	/** Gets the time after which a drag over event is published regardless. */
+	public int getDragOverInterval() {
+		return dragOverInterval;
+	}
+
+	/** Gets the number of drag over events published so far. */
+	public long getPublishedDragOverCount() {
+		return publishedDragOvers.sum();
+	}
+
+	/** Gets the number of drag over events suppressed so far. */
+	public long getSuppressedDragOverCount() {
+		return suppressedDragOvers.sum();
+	}
+
+	/**
+	 * Sets whether dropped file lists are streamed to the
+	 * {@link DragAndDropService}.
+	 * <p>
+	 * In streaming mode, a drop of at least {@link #setStreamingThreshold(int)
+	 * streaming threshold} files completes immediately, and the files are then
+	 * handed to the service in chunks of {@link #setDropChunkSize(int) chunk
+	 * size} files, with at most {@link #setDropConcurrency(int) concurrency}
+	 * chunks being handled at once. No {@link DropEvent} is published for such
+	 * drops. Instead, the drag-and-drop handlers are invoked directly, on worker
+	 * threads of the {@link org.scijava.thread.ThreadService} (or of the task
+	 * itself, if the context has none), and possibly concurrently for different
+	 * chunks; see {@link AWTFileDropTask}. Such drops can be canceled through
+	 * the task's {@link org.scijava.task.Task}, if the context has a
+	 * {@link org.scijava.task.TaskService}. Drops of
+	 * fewer files are published as a {@link DropEvent} on the AWT event
+	 * dispatch thread, as without streaming.
+	 * </p>
+	 */
+	public void setStreamingDrops(final boolean streamingDrops) {
+		this.streamingDrops = streamingDrops;
+	}
+
+	/** Gets whether dropped file lists are streamed. */
+	public boolean isStreamingDrops() {
+		return streamingDrops;
+	}
+
+	/**
+	 * Sets the minimum number of dropped files which are streamed, when
+	 * {@link #setStreamingDrops(boolean) streaming drops} are enabled.
+	 */
+	public void setStreamingThreshold(final int threshold) {
+		if (threshold < 0) {
+			throw new IllegalArgumentException("Negative threshold: " + threshold);
+		}
+		streamingThreshold = threshold;
+	}
+
+	/** Gets the minimum number of dropped files which are streamed. */
+	public int getStreamingThreshold() {
+		return streamingThreshold;
+	}
+
+	/**
+	 * Sets the sniffer with which the data of each drag classifies the dragged
+	 * files, via {@link AWTDragAndDropData#getFileTypes()}.
+	 * <p>
+	 * For drags from other applications, the file list is only available once
+	 * the drop is being handled, so files are typically classified by
+	 * {@link DropEvent} handlers rather than during the drag.
+	 * </p>
+	 */
+	public void setFileSniffer(final AWTFileSniffer fileSniffer) {
+		this.fileSniffer = fileSniffer;
+	}
+
+	/** Gets the sniffer classifying dragged files, or null if none. */
+	public AWTFileSniffer getFileSniffer() {
+		return fileSniffer;
+	}
+
+	/** Sets the number of files handed to the service at once when streaming. */
+	public void setDropChunkSize(final int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+		dropChunkSize = chunkSize;
+	}
+
+	/** Gets the number of files handed to the service at once when streaming. */
+	public int getDropChunkSize() {
+		return dropChunkSize;
+	}
+
+	/** Sets the maximum number of file chunks handled concurrently. */
+	public void setDropConcurrency(final int concurrency) {
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("Invalid concurrency: " +
+				concurrency);
+		}
+		dropConcurrency = concurrency;
+	}
+
+	/** Gets the maximum number of file chunks handled concurrently. */
+	public int getDropConcurrency() {
+		return dropConcurrency;
+	}
+
+	/** Gets the most recently started file drop task, or null if none. */
+	public AWTFileDropTask getDropTask() {
+		return dropTask;
+	}
+
+	/** Cancels the most recently started file drop task, if any. */
+	public void cancelDrop() {
+		final AWTFileDropTask task = dropTask;
+		if (task != null) task.cancel();
+	}
+
+	/**
+	 * Gets the display associated with the dispatched events, or null if there
+	 * is none or it is no longer available.
+	 * <p>
+	 * Once the display is no longer available, the dispatcher rejects drags and
+	 * drops instead of publishing their events, and closes its registrations.
+	 * </p>
+	 */
+	public Display<?> getDisplay() {
+		return display == null ? null : display.get();
+	}
+
 	// -- DropTargetListener methods --
 
 	@Override
 	public void dragEnter(final DropTargetDragEvent e) {
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) {
+			e.rejectDrag();
+			return;
+		}
 		final InputModifiers mods = getModifiers();
 		final Point p = e.getLocation();
-		final DragAndDropData data = createData(e.getTransferable());
+		final DragSession session =
+			new DragSession(createData(e.getTransferable()));
 		final DragEnterEvent dragEnter =
-			new DragEnterEvent(display, mods, p.x, p.y, data);
+			new DragEnterEvent(d, mods, p.x, p.y, session.data);
 
 		eventService.publish(dragEnter);
 
-		if (dragEnter.isAccepted()) e.acceptDrag(DnDConstants.ACTION_COPY);
-		else e.rejectDrag();
+		session.accepted = dragEnter.isAccepted();
+		session.published(p, System.nanoTime());
+		dragSession = session;
+		session.apply(e);
 	}
 
 	@Override
 	public void dragOver(final DropTargetDragEvent e) {
-		final InputModifiers mods = getModifiers();
 		final Point p = e.getLocation();
-		final DragAndDropData data = createData(e.getTransferable());
+		final DragSession session = dragSession;
+		final long now = System.nanoTime();
+		if (session != null && !publishDragOver(session, p, now)) {
+			suppressedDragOvers.increment();
+			session.apply(e);
+			return;
+		}
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) {
+			e.rejectDrag();
+			return;
+		}
+		final InputModifiers mods = getModifiers();
+		final DragAndDropData data =
+			session == null ? createData(e.getTransferable()) : session.data;
 
-		eventService.publish(new DragOverEvent(display, mods, p.x, p.y, data));
+		publishedDragOvers.increment();
+		eventService.publish(new DragOverEvent(d, mods, p.x, p.y, data));
+
+		if (session != null) {
+			session.published(p, now);
+			session.apply(e);
+		}
 	}
 
 	@Override
@@ -111,14 +409,37 @@ public class AWTDropTargetEventDispatcher implements DropTargetListener {
 
 	@Override
 	public void dragExit(final DropTargetEvent e) {
-		eventService.publish(new DragExitEvent(display));
+		dragSession = null;
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		eventService.publish(new DragExitEvent(d));
 	}
 
 	@Override
 	public void drop(final DropTargetDropEvent e) {
+		final DragSession session = dragSession;
+		dragSession = null;
+
+		final Display<?> display = getDisplay();
+		if (displayGone(display)) {
+			e.rejectDrop();
+			return;
+		}
+
+		final Transferable t = e.getTransferable();
+		boolean accepted = false;
+		if (streamingDrops && t.isDataFlavorSupported(
+			DataFlavor.javaFileListFlavor))
+		{
+			if (streamDrop(e, t, display)) return;
+			accepted = true;
+		}
+
 		final InputModifiers mods = getModifiers();
 		final Point p = e.getLocation();
-		final DragAndDropData data = createData(e.getTransferable());
+		final AWTDragAndDropData data =
+			session != null && session.data.getTransferable() == t ? session.data
+				: createData(t);
 		final DropEvent drop = new DropEvent(display, mods, p.x, p.y, data);
 
 		final DragAndDropService dragAndDropService =
@@ -126,12 +447,21 @@ public class AWTDropTargetEventDispatcher implements DropTargetListener {
 		if (dragAndDropService != null &&
 			dragAndDropService.supports(data, display))
 		{
-			e.acceptDrop(DnDConstants.ACTION_COPY);
+			if (!accepted) e.acceptDrop(DnDConstants.ACTION_COPY);
+			accepted = true;
+		}
+		else if (!accepted) e.rejectDrop();
+		else {
+			// NB: A drop accepted to read its file list can no longer be rejected.
+			e.dropComplete(false);
+			return;
 		}
-		else e.rejectDrop();
 
+		// NB: The data of other applications can only be transferred until the
+		// drop is complete, which AWT also enforces once this method returns.
+		// Handlers therefore transfer it while the drop event is published.
+		data.setLocalTransfer(e.isLocalTransfer());
 		eventService.publish(drop);
-
 		e.dropComplete(drop.isSuccessful());
 	}
 
@@ -143,8 +473,120 @@ public class AWTDropTargetEventDispatcher implements DropTargetListener {
 		return inputService == null ? null : inputService.getModifiers();
 	}
 
-	private DragAndDropData createData(final Transferable t) {
-		return new AWTDragAndDropData(eventService.getContext(), t);
+	/**
+	 * Completes the drop of a file list, then streams the files, unless there
+	 * are fewer than the streaming threshold.
+	 * 
+	 * @return True if the drop was handled; false if the drop was accepted, but
+	 *         its files are too few to be streamed.
+	 */
+	private boolean streamDrop(final DropTargetDropEvent e, final Transferable t,
+		final Display<?> display)
+	{
+		final Context context = eventService.getContext();
+		if (context.getService(DragAndDropService.class) == null) {
+			e.rejectDrop();
+			return true;
+		}
+		e.acceptDrop(DnDConstants.ACTION_COPY);
+		final List<File> files;
+		try {
+			@SuppressWarnings("unchecked")
+			final List<File> list =
+				(List<File>) t.getTransferData(DataFlavor.javaFileListFlavor);
+			files = list;
+		}
+		catch (final UnsupportedFlavorException | IOException exc) {
+			final LogService log = context.getService(LogService.class);
+			if (log != null) log.error("Drag-and-drop error", exc);
+			e.dropComplete(false);
+			return true;
+		}
+		if (files.size() < streamingThreshold) return false;
+		e.dropComplete(true);
+		dropTask = new AWTFileDropTask(context, display, files,
+			dropChunkSize, dropConcurrency).start();
+		return true;
+	}
+
+	/**
+	 * Checks whether the given display, as obtained from {@link #getDisplay()},
+	 * means that the display of the dispatcher is gone, rather than never set.
+	 * If so, the dispatcher is detached, and the event must be dropped.
+	 */
+	private boolean displayGone(final Display<?> d) {
+		if (d != null || display == null) return false;
+		dragSession = null;
+		final AWTRegistration[] open;
+		synchronized (registrations) {
+			open = registrations.toArray(new AWTRegistration[registrations.size()]);
+		}
+		for (final AWTRegistration registration : open) {
+			registration.close();
+		}
+		return true;
+	}
+
+	/**
+	 * Decides whether a drag over event at the given point is published.
+	 * 
+	 * @param session The drag in progress.
+	 * @param p The location of the drag over event.
+	 * @param now The time of the drag over event, from System.nanoTime().
+	 */
+	boolean publishDragOver(final DragSession session, final Point p,
+		final long now)
+	{
+		final long dx = p.x - session.lastX, dy = p.y - session.lastY;
+		final long threshold = dragOverThreshold;
+		if (dx * dx + dy * dy > threshold * threshold) return true;
+		final long elapsed = now - session.lastPublished;
+		return elapsed >= TimeUnit.MILLISECONDS.toNanos(dragOverInterval);
+	}
+
+	private AWTDragAndDropData createData(final Transferable t) {
+		final AWTDragAndDropData data =
+			new AWTDragAndDropData(eventService.getContext(), t);
+		data.setFileSniffer(fileSniffer);
+		return data;
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * State of a drag over the component, kept from {@code dragEnter} until
+	 * {@code drop} or {@code dragExit}.
+	 */
+	static class DragSession {
+
+		/** Data of the drag, reused by every event of the drag. */
+		private final AWTDragAndDropData data;
+
+		/** Whether the drag was accepted when entering the component. */
+		private boolean accepted;
+
+		/** Location of the most recently published event. */
+		private int lastX, lastY;
+
+		/** Time of the most recently published event, from System.nanoTime(). */
+		private long lastPublished;
+
+		DragSession(final AWTDragAndDropData data) {
+			this.data = data;
+		}
+
+		/** Notes that an event was published at the given location and time. */
+		void published(final Point p, final long when) {
+			lastX = p.x;
+			lastY = p.y;
+			lastPublished = when;
+		}
+
+		/** Applies the acceptance decision to the given AWT event. */
+		private void apply(final DropTargetDragEvent e) {
+			if (accepted) e.acceptDrag(DnDConstants.ACTION_COPY);
+			else e.rejectDrag();
+		}
 	}
 
 }
@@ -0,0 +1,385 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.WindowEvent;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Routes AWT input and window events to {@link AWTInputEventDispatcher}s and
+ * {@link AWTWindowEventDispatcher}s through a single, {@link Toolkit}-level
+ * {@link AWTEventListener}.
+ * <p>
+ * Registering a component with the router adds no listeners to the component
+ * itself. Instead, each event is looked up by its source component in a weak
+ * map, and handed to the matching dispatcher. Routes are removed by
+ * {@link #unregister(Component)}, or when the {@link AWTRegistration}s returned
+ * by the {@code attach} methods are closed, and components which are no longer
+ * referenced elsewhere drop out of the map automatically.
+ * </p>
+ * <p>
+ * Events are matched against their exact source component. Lightweight
+ * components without any listeners of their own do not receive mouse events
+ * from AWT (their heavyweight ancestor does), so such components should
+ * continue to use {@link AWTInputEventDispatcher#register}.
+ * </p>
+ */
+public final class AWTEventRouter implements AWTEventListener {
+
+	/** Mask of the AWT events examined by the router. */
+	private static final long EVENT_MASK = AWTEvent.KEY_EVENT_MASK |
+		AWTEvent.FOCUS_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK |
+		AWTEvent.MOUSE_WHEEL_EVENT_MASK | AWTEvent.WINDOW_EVENT_MASK;
+
+	private static AWTEventRouter instance;
+
+	/** Dispatch routes, keyed by source component. */
+	private final Map<Component, Route> routes = new WeakHashMap<>();
+
+	/** Whether the router is currently installed as a toolkit listener. */
+	private boolean installed;
+
+	private AWTEventRouter() {
+		// NB: Use getInstance() instead.
+	}
+
+	/** Gets the shared router instance. */
+	public static synchronized AWTEventRouter getInstance() {
+		if (instance == null) instance = new AWTEventRouter();
+		return instance;
+	}
+
+	// -- AWTEventRouter methods --
+
+	/**
+	 * Routes events of the given component to the specified input event
+	 * dispatcher, until {@link #unregister(Component)} is called.
+	 * 
+	 * @param c The component from which to rebroadcast events.
+	 * @param dispatcher The dispatcher to receive the events.
+	 * @param keyEvents True if key events should be dispatched.
+	 * @param mouseEvents True if mouse events should be dispatched.
+	 */
+	public void register(final Component c,
+		final AWTInputEventDispatcher dispatcher, final boolean keyEvents,
+		final boolean mouseEvents)
+	{
+		final AWTRegistration replaced = route(c, dispatcher, null, keyEvents,
+			mouseEvents);
+		if (replaced != null) replaced.close();
+	}
+
+	/**
+	 * Routes events of the given component to the specified input event
+	 * dispatcher, like
+	 * {@link #register(Component, AWTInputEventDispatcher, boolean, boolean)}.
+	 * <p>
+	 * The returned handle stops routing the events again when closed, which
+	 * happens automatically once the dispatcher's display is closed.
+	 * </p>
+	 * 
+	 * @param c The component from which to rebroadcast events.
+	 * @param dispatcher The dispatcher to receive the events.
+	 * @param keyEvents True if key events should be dispatched.
+	 * @param mouseEvents True if mouse events should be dispatched.
+	 * @return The handle of the registration.
+	 */
+	public AWTRegistration attach(final Component c,
+		final AWTInputEventDispatcher dispatcher, final boolean keyEvents,
+		final boolean mouseEvents)
+	{
+		final AWTRegistration registration = new AWTRegistration(c, dispatcher
+			.getDisplay(), dispatcher.getEventService(), this::unregisterInput);
+		final AWTRegistration replaced = route(c, dispatcher, registration,
+			keyEvents, mouseEvents);
+		// NB: Track the new registration first, so that closing the replaced one
+		// does not leave the dispatcher without registrations.
+		dispatcher.attached(registration);
+		if (replaced != null) replaced.close();
+		return registration.open();
+	}
+
+	/**
+	 * Routes events of the given window to the specified window event
+	 * dispatcher, until {@link #unregister(Component)} is called.
+	 */
+	public void register(final Window w,
+		final AWTWindowEventDispatcher dispatcher)
+	{
+		final AWTRegistration replaced = route(w, dispatcher, null);
+		if (replaced != null) replaced.close();
+	}
+
+	/**
+	 * Routes events of the given window to the specified window event
+	 * dispatcher, like {@link #register(Window, AWTWindowEventDispatcher)}.
+	 * <p>
+	 * The returned handle stops routing the events again when closed, which
+	 * happens automatically once the window is closed.
+	 * </p>
+	 * 
+	 * @return The handle of the registration.
+	 */
+	public AWTRegistration attach(final Window w,
+		final AWTWindowEventDispatcher dispatcher)
+	{
+		final AWTRegistration registration = new AWTRegistration(w, dispatcher
+			.getDisplay(), dispatcher.getEventService(), this::unregisterWindow);
+		final AWTRegistration replaced = route(w, dispatcher, registration);
+		if (replaced != null) replaced.close();
+		return registration.open();
+	}
+
+	/**
+	 * Stops routing events of the given component, closing its registrations.
+	 */
+	public void unregister(final Component c) {
+		final Route route;
+		synchronized (this) {
+			route = routes.remove(c);
+			if (routes.isEmpty()) uninstall();
+		}
+		if (route == null) return;
+		if (route.inputRegistration != null) route.inputRegistration.close();
+		if (route.windowRegistration != null) route.windowRegistration.close();
+	}
+
+	/** Gets the number of components whose events are currently routed. */
+	public synchronized int getRouteCount() {
+		return routes.size();
+	}
+
+	// -- AWTEventListener methods --
+
+	@Override
+	public void eventDispatched(final AWTEvent e) {
+		final Route route;
+		synchronized (this) {
+			route = routes.get(e.getSource());
+		}
+		if (route == null) return;
+		if (e instanceof KeyEvent) dispatchKey(route, (KeyEvent) e);
+		else if (e instanceof MouseEvent) dispatchMouse(route, (MouseEvent) e);
+		else if (e instanceof WindowEvent) dispatchWindow(route, (WindowEvent) e);
+		else if (e instanceof FocusEvent) dispatchFocus(route, (FocusEvent) e);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Routes the input events of the given component.
+	 * 
+	 * @return The registration of the replaced input route, if any.
+	 */
+	private synchronized AWTRegistration route(final Component c,
+		final AWTInputEventDispatcher dispatcher,
+		final AWTRegistration registration, final boolean keyEvents,
+		final boolean mouseEvents)
+	{
+		final Route route = route(c);
+		final AWTRegistration replaced = route.inputRegistration;
+		route.inputDispatcher = dispatcher;
+		route.inputRegistration = registration;
+		route.keyEvents = keyEvents;
+		route.mouseEvents = mouseEvents;
+		return replaced;
+	}
+
+	/**
+	 * Routes the window events of the given window.
+	 * 
+	 * @return The registration of the replaced window route, if any.
+	 */
+	private synchronized AWTRegistration route(final Window w,
+		final AWTWindowEventDispatcher dispatcher,
+		final AWTRegistration registration)
+	{
+		final Route route = route(w);
+		final AWTRegistration replaced = route.windowRegistration;
+		route.windowDispatcher = dispatcher;
+		route.windowRegistration = registration;
+		return replaced;
+	}
+
+	private Route route(final Component c) {
+		Route route = routes.get(c);
+		if (route == null) {
+			route = new Route();
+			routes.put(c, route);
+		}
+		install();
+		return route;
+	}
+
+	private synchronized void unregisterInput(final AWTRegistration r,
+		final Component c)
+	{
+		final Route route = routes.get(c);
+		if (route == null || route.inputRegistration != r) return;
+		route.inputDispatcher = null;
+		route.inputRegistration = null;
+		removeIfUnused(c, route);
+	}
+
+	private synchronized void unregisterWindow(final AWTRegistration r,
+		final Component c)
+	{
+		final Route route = routes.get(c);
+		if (route == null || route.windowRegistration != r) return;
+		route.windowDispatcher = null;
+		route.windowRegistration = null;
+		removeIfUnused(c, route);
+	}
+
+	private void removeIfUnused(final Component c, final Route route) {
+		if (route.inputDispatcher != null || route.windowDispatcher != null) return;
+		routes.remove(c);
+		if (routes.isEmpty()) uninstall();
+	}
+
+	private void install() {
+		if (installed) return;
+		Toolkit.getDefaultToolkit().addAWTEventListener(this, EVENT_MASK);
+		installed = true;
+	}
+
+	private void uninstall() {
+		if (!installed) return;
+		Toolkit.getDefaultToolkit().removeAWTEventListener(this);
+		installed = false;
+	}
+
+	private void dispatchKey(final Route route, final KeyEvent e) {
+		final AWTInputEventDispatcher d = route.inputDispatcher;
+		if (d == null || !route.keyEvents) return;
+		switch (e.getID()) {
+			case KeyEvent.KEY_TYPED:
+				d.keyTyped(e);
+				break;
+			case KeyEvent.KEY_PRESSED:
+				d.keyPressed(e);
+				break;
+			case KeyEvent.KEY_RELEASED:
+				d.keyReleased(e);
+				break;
+		}
+	}
+
+	private void dispatchFocus(final Route route, final FocusEvent e) {
+		final AWTInputEventDispatcher d = route.inputDispatcher;
+		if (d == null || !route.keyEvents) return;
+		if (e.getID() == FocusEvent.FOCUS_LOST) d.focusLost(e);
+	}
+
+	private void dispatchMouse(final Route route, final MouseEvent e) {
+		final AWTInputEventDispatcher d = route.inputDispatcher;
+		if (d == null || !route.mouseEvents) return;
+		switch (e.getID()) {
+			case MouseEvent.MOUSE_CLICKED:
+				d.mouseClicked(e);
+				break;
+			case MouseEvent.MOUSE_PRESSED:
+				d.mousePressed(e);
+				break;
+			case MouseEvent.MOUSE_RELEASED:
+				d.mouseReleased(e);
+				break;
+			case MouseEvent.MOUSE_ENTERED:
+				d.mouseEntered(e);
+				break;
+			case MouseEvent.MOUSE_EXITED:
+				d.mouseExited(e);
+				break;
+			case MouseEvent.MOUSE_DRAGGED:
+				d.mouseDragged(e);
+				break;
+			case MouseEvent.MOUSE_MOVED:
+				d.mouseMoved(e);
+				break;
+			case MouseEvent.MOUSE_WHEEL:
+				d.mouseWheelMoved((MouseWheelEvent) e);
+				break;
+		}
+	}
+
+	private void dispatchWindow(final Route route, final WindowEvent e) {
+		final AWTWindowEventDispatcher d = route.windowDispatcher;
+		if (d == null) return;
+		switch (e.getID()) {
+			case WindowEvent.WINDOW_OPENED:
+				d.windowOpened(e);
+				break;
+			case WindowEvent.WINDOW_CLOSING:
+				d.windowClosing(e);
+				break;
+			case WindowEvent.WINDOW_CLOSED:
+				d.windowClosed(e);
+				break;
+			case WindowEvent.WINDOW_ICONIFIED:
+				d.windowIconified(e);
+				break;
+			case WindowEvent.WINDOW_DEICONIFIED:
+				d.windowDeiconified(e);
+				break;
+			case WindowEvent.WINDOW_ACTIVATED:
+				d.windowActivated(e);
+				break;
+			case WindowEvent.WINDOW_DEACTIVATED:
+				d.windowDeactivated(e);
+				break;
+		}
+	}
+
+	// -- Helper classes --
+
+	/** Dispatchers receiving the events of one component. */
+	private static class Route {
+
+		private AWTInputEventDispatcher inputDispatcher;
+		private AWTRegistration inputRegistration;
+		private boolean keyEvents;
+		private boolean mouseEvents;
+		private AWTWindowEventDispatcher windowDispatcher;
+		private AWTRegistration windowRegistration;
+	}
+
+}
@@ -0,0 +1,303 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.scijava.AbstractContextual;
+import org.scijava.Context;
+import org.scijava.app.StatusService;
+import org.scijava.display.Display;
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.task.Task;
+import org.scijava.task.TaskService;
+import org.scijava.thread.ThreadService;
+import org.scijava.ui.dnd.DragAndDropService;
+
+/**
+ * Hands a dropped file list to the {@link DragAndDropService} in chunks, on a
+ * worker pool, after the drop itself has already completed.
+ * <p>
+ * At most a bounded number of chunks are handled concurrently. Progress is
+ * reported through the {@link StatusService} after each chunk, and the task
+ * can be {@link #cancel() canceled}, in which case the remaining chunks are
+ * skipped.
+ * </p>
+ * <p>
+ * If the context has a {@link TaskService}, the drop is also tracked as a
+ * {@link Task}, so that user interfaces listing tasks show its progress and
+ * let users cancel it, just like calling {@link #cancel()}.
+ * </p>
+ * <p>
+ * The chunks are handled on the executor's threads, never on the AWT event
+ * dispatch thread, and up to the given concurrency of them at the same time.
+ * The {@link org.scijava.ui.dnd.DragAndDropHandler}s invoked for dropped
+ * files must therefore be thread-safe, and must hand any work on Swing or AWT
+ * components over to the event dispatch thread themselves.
+ * </p>
+ */
+public class AWTFileDropTask extends AbstractContextual {
+
+	/** Default number of files handed to the service at once. */
+	public static final int DEFAULT_CHUNK_SIZE = 16;
+
+	private final List<File> files;
+	private final Display<?> display;
+	private final int chunkSize;
+	private final int concurrency;
+
+	/** Index of the next chunk to handle. */
+	private final AtomicInteger nextChunk = new AtomicInteger();
+
+	/** Number of files handled so far. */
+	private final AtomicInteger processed = new AtomicInteger();
+
+	/** Number of files whose chunk could not be handled. */
+	private final AtomicInteger failed = new AtomicInteger();
+
+	/** Number of workers still running. */
+	private final AtomicInteger workers = new AtomicInteger();
+
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+	private volatile boolean cancelled;
+
+	@Parameter(required = false)
+	private DragAndDropService dragAndDropService;
+
+	@Parameter(required = false)
+	private StatusService statusService;
+
+	@Parameter(required = false)
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private TaskService taskService;
+
+	/** The task tracking the drop, or null if there is no task service. */
+	private volatile Task task;
+
+	@Parameter(required = false)
+	private LogService log;
+
+	/**
+	 * Creates a task handing the given files to the drag-and-drop service.
+	 * 
+	 * @param context The context providing the services.
+	 * @param display The display onto which the files were dropped.
+	 * @param files The dropped files.
+	 * @param chunkSize The number of files handed to the service at once.
+	 * @param concurrency The maximum number of chunks handled concurrently.
+	 */
+	public AWTFileDropTask(final Context context, final Display<?> display,
+		final List<File> files, final int chunkSize, final int concurrency)
+	{
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("Invalid concurrency: " +
+				concurrency);
+		}
+		setContext(context);
+		this.display = display;
+		this.files = files;
+		this.chunkSize = chunkSize;
+		this.concurrency = concurrency;
+	}
+
+	// -- AWTFileDropTask methods --
+
+	/**
+	 * Starts handling the files on the {@link ThreadService}'s executor, or on
+	 * threads of its own if the context has no thread service.
+	 */
+	public AWTFileDropTask start() {
+		if (threadService != null) return start(threadService.getExecutorService());
+		final ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+			r -> {
+				final Thread t = new Thread(r, "AWTFileDropTask");
+				t.setDaemon(true);
+				return t;
+			});
+		try {
+			return start(executor);
+		}
+		finally {
+			// NB: The submitted chunks are still handled; the threads then end.
+			executor.shutdown();
+		}
+	}
+
+	/** Starts handling the files on the given executor. */
+	public AWTFileDropTask start(final Executor executor) {
+		if (taskService != null) {
+			final Task t = taskService.createTask("Dropping " + files.size() +
+				" files");
+			t.setProgressMaximum(files.size());
+			t.run(completion::join);
+			task = t;
+		}
+		final int count = Math.min(concurrency, getChunkCount());
+		if (count == 0) {
+			finish();
+			return this;
+		}
+		workers.set(count);
+		for (int i = 0; i < count; i++) {
+			executor.execute(this::work);
+		}
+		return this;
+	}
+
+	/**
+	 * Cancels the task. Chunks already being handled complete, but no further
+	 * chunks are started.
+	 */
+	public void cancel() {
+		cancelled = true;
+		final Task t = task;
+		if (t != null && !t.isCanceled()) t.cancel("Drop canceled");
+	}
+
+	/**
+	 * Gets whether the task has been canceled, either by {@link #cancel()} or
+	 * through its {@link Task}.
+	 */
+	public boolean isCancelled() {
+		if (cancelled) return true;
+		final Task t = task;
+		return t != null && t.isCanceled();
+	}
+
+	/**
+	 * Gets the {@link Task} tracking the drop, or null if the context has no
+	 * {@link TaskService} or the drop has not started yet.
+	 */
+	public Task getTask() {
+		return task;
+	}
+
+	/** Gets whether the task has finished, whether canceled or not. */
+	public boolean isDone() {
+		return completion.isDone();
+	}
+
+	/** Gets a future which completes once the task has finished. */
+	public CompletableFuture<Void> getCompletion() {
+		return completion;
+	}
+
+	/** Gets the number of dropped files. */
+	public int getFileCount() {
+		return files.size();
+	}
+
+	/** Gets the number of files handled so far. */
+	public int getProcessedCount() {
+		return processed.get();
+	}
+
+	/** Gets the number of files whose chunk could not be handled. */
+	public int getFailedCount() {
+		return failed.get();
+	}
+
+	// -- Helper methods --
+
+	private int getChunkCount() {
+		return (files.size() + chunkSize - 1) / chunkSize;
+	}
+
+	/** Handles chunks until none are left, or the task is canceled. */
+	private void work() {
+		try {
+			final int chunks = getChunkCount();
+			while (!isCancelled()) {
+				final int chunk = nextChunk.getAndIncrement();
+				if (chunk >= chunks) break;
+				final int from = chunk * chunkSize;
+				final int to = Math.min(from + chunkSize, files.size());
+				if (!drop(files.subList(from, to))) failed.addAndGet(to - from);
+				final int done = processed.addAndGet(to - from);
+				final String message = "Dropping files: " + done + "/" + files.size();
+				if (statusService != null) {
+					statusService.showStatus(done, files.size(), message);
+				}
+				final Task t = task;
+				if (t != null) {
+					t.setProgressValue(done);
+					t.setStatusMessage(message);
+				}
+			}
+		}
+		finally {
+			if (workers.decrementAndGet() == 0) finish();
+		}
+	}
+
+	private boolean drop(final List<File> chunk) {
+		if (dragAndDropService == null) return false;
+		try {
+			return dragAndDropService.supports(chunk, display) &&
+				dragAndDropService.drop(chunk, display);
+		}
+		catch (final RuntimeException exc) {
+			if (log != null) log.error("Error dropping files", exc);
+			return false;
+		}
+	}
+
+	private void finish() {
+		if (statusService != null) {
+			final int done = processed.get();
+			final String message;
+			if (isCancelled()) {
+				message = "Drop canceled: " + done + "/" + files.size() + " files";
+			}
+			else if (failed.get() > 0) {
+				message = "Dropped " + done + " files (" + failed.get() + " failed)";
+			}
+			else message = "Dropped " + done + " files";
+			statusService.showStatus(0, 0, message);
+		}
+		completion.complete(null);
+	}
+
+}
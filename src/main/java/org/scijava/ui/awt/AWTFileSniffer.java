@@ -0,0 +1,316 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classifies files by their content, matching the first bytes of each file
+ * against registered magic-number signatures.
+ * <p>
+ * Only a bounded prefix of each file is read, and lists of files are
+ * classified in parallel, on a dedicated pool of I/O threads rather than the
+ * common fork-join pool. Results are kept in a bounded, least recently used
+ * cache keyed by path, size and modification time, so that asking again about
+ * the same files is nearly free.
+ * </p>
+ * <p>
+ * Files can only be classified once their list is available. For drags from
+ * other applications, AWT provides the list only after the drop has been
+ * accepted, so classification is typically done by {@code DropEvent}
+ * handlers, using {@link AWTDragAndDropData#getFileTypes()}.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public class AWTFileSniffer {
+
+	/** Default number of bytes examined at the start of each file. */
+	public static final int DEFAULT_PREFIX_SIZE = 4096;
+
+	/** Default maximum number of cached classifications. */
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	/** Number of threads of the shared I/O pool. */
+	private static final int IO_THREADS = 4;
+
+	/** Shared pool for reading files, created on first use. */
+	private static ExecutorService ioPool;
+
+	/** Registered signatures, in order of registration. */
+	private final List<Signature> signatures = new CopyOnWriteArrayList<>();
+
+	/** Classifications, least recently used first. */
+	private final Map<Key, String> cache;
+
+	/** Number of bytes examined at the start of each file. */
+	private final int prefixSize;
+
+	/** Executor on which files are read, or null to use the shared pool. */
+	private final Executor executor;
+
+	/** Creates a file sniffer examining the first 4 KiB of each file. */
+	public AWTFileSniffer() {
+		this(DEFAULT_PREFIX_SIZE);
+	}
+
+	/** Creates a file sniffer examining the given number of bytes per file. */
+	public AWTFileSniffer(final int prefixSize) {
+		this(prefixSize, DEFAULT_CACHE_SIZE, null);
+	}
+
+	/**
+	 * Creates a file sniffer.
+	 * 
+	 * @param prefixSize The number of bytes examined at the start of each file.
+	 * @param cacheSize The maximum number of cached classifications.
+	 * @param executor The executor on which files are read, or null to use a
+	 *          shared pool of I/O threads.
+	 */
+	public AWTFileSniffer(final int prefixSize, final int cacheSize,
+		final Executor executor)
+	{
+		if (prefixSize <= 0) {
+			throw new IllegalArgumentException("Invalid prefix size: " + prefixSize);
+		}
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("Negative cache size: " + cacheSize);
+		}
+		this.prefixSize = prefixSize;
+		this.executor = executor;
+		cache = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, String> e) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	// -- AWTFileSniffer methods --
+
+	/**
+	 * Registers a signature. Files whose bytes at the given offset match the
+	 * magic number are classified with the given name, unless an earlier
+	 * registered signature matches too.
+	 * 
+	 * @param name The name of the file type, e.g. {@code "image/png"}.
+	 * @param offset The offset of the magic number within the file.
+	 * @param magic The magic number.
+	 */
+	public void register(final String name, final int offset,
+		final byte[] magic)
+	{
+		if (offset < 0 || magic.length == 0 || offset + magic.length > prefixSize) {
+			throw new IllegalArgumentException("Signature '" + name +
+				"' does not fit into the prefix of " + prefixSize + " bytes");
+		}
+		signatures.add(new Signature(name, offset, magic.clone()));
+		clearCache();
+	}
+
+	/**
+	 * Classifies the given file.
+	 * 
+	 * @return The name of the first matching signature, or null if none matches
+	 *         or the file cannot be read.
+	 */
+	public String classify(final File file) {
+		final Path path = file.toPath();
+		final BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		}
+		catch (final IOException exc) {
+			return null;
+		}
+		if (!attrs.isRegularFile()) return null;
+		final Key key = new Key(path, attrs.size(), attrs.lastModifiedTime()
+			.toMillis());
+		synchronized (cache) {
+			// NB: A null name is cached as well, so check for the key.
+			if (cache.containsKey(key)) return cache.get(key);
+		}
+		final String name = sniff(path, key.size);
+		synchronized (cache) {
+			cache.put(key, name);
+		}
+		return name;
+	}
+
+	/**
+	 * Classifies the given files in parallel, blocking until all of them are
+	 * classified.
+	 * 
+	 * @return The name of the first matching signature of each file, or null
+	 *         for files which match none, in the order of the given list.
+	 */
+	public Map<File, String> classify(final List<File> files) {
+		final Executor e = executor == null ? ioPool() : executor;
+		final List<CompletableFuture<String>> names = new ArrayList<>(files
+			.size());
+		for (final File file : files) {
+			names.add(CompletableFuture.supplyAsync(() -> classify(file), e));
+		}
+		final Map<File, String> result = new LinkedHashMap<>();
+		for (int i = 0; i < names.size(); i++) {
+			result.put(files.get(i), names.get(i).join());
+		}
+		return result;
+	}
+
+	/** Discards all cached classifications. */
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/** Gets the number of cached classifications. */
+	public int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Reads the prefix of the given file and matches it against signatures. */
+	private String sniff(final Path path, final long size) {
+		final int length = (int) Math.min(size, prefixSize);
+		if (length == 0) return null;
+		// NB: Read rather than map the prefix; a mapping would stay alive until
+		// garbage collected, keeping the file locked on some platforms.
+		final ByteBuffer prefix = ByteBuffer.allocate(length);
+		try (final FileChannel channel = FileChannel.open(path,
+			StandardOpenOption.READ))
+		{
+			while (prefix.hasRemaining() && channel.read(prefix) >= 0) {
+				// NB: Keep reading until the prefix is full or the file ends.
+			}
+		}
+		catch (final IOException exc) {
+			return null;
+		}
+		for (final Signature signature : signatures) {
+			if (signature.matches(prefix, prefix.position())) return signature.name;
+		}
+		return null;
+	}
+
+	/** Gets the shared pool of daemon threads for reading files. */
+	private static synchronized ExecutorService ioPool() {
+		if (ioPool == null) {
+			final AtomicInteger count = new AtomicInteger();
+			ioPool = Executors.newFixedThreadPool(IO_THREADS, r -> {
+				final Thread t = new Thread(r, "AWTFileSniffer-" + count
+					.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return ioPool;
+	}
+
+	// -- Helper classes --
+
+	/** A magic number at a given offset. */
+	private static class Signature {
+
+		private final String name;
+		private final int offset;
+		private final byte[] magic;
+
+		private Signature(final String name, final int offset,
+			final byte[] magic)
+		{
+			this.name = name;
+			this.offset = offset;
+			this.magic = magic;
+		}
+
+		private boolean matches(final ByteBuffer prefix, final int length) {
+			if (offset + magic.length > length) return false;
+			for (int i = 0; i < magic.length; i++) {
+				if (prefix.get(offset + i) != magic[i]) return false;
+			}
+			return true;
+		}
+	}
+
+	/** Identifies one version of a file, by path, size and modification time. */
+	private static class Key {
+
+		private final Path path;
+		private final long size;
+		private final long modified;
+
+		private Key(final Path path, final long size, final long modified) {
+			this.path = path;
+			this.size = size;
+			this.modified = modified;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key key = (Key) o;
+			return path.equals(key.path) && size == key.size &&
+				modified == key.modified;
+		}
+
+		@Override
+		public int hashCode() {
+			return (path.hashCode() * 31 + Long.hashCode(size)) * 31 + Long
+				.hashCode(modified);
+		}
+	}
+
+}
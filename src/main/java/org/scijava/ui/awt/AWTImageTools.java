@@ -36,6 +36,17 @@ import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
+
+import org.scijava.ui.ARGBPlane;
 
 /**
  * Convenience methods for working with AWT {@link Image}s.
@@ -44,6 +55,16 @@ import java.awt.image.BufferedImage;
  */
 public final class AWTImageTools {
 
+	/** Bit masks of the ARGB components of a packed pixel. */
+	private static final int[] ARGB_MASKS =
+		{ 0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000 };
+
+	/** Number of pixels above which planes are copied in parallel. */
+	private static final long PARALLEL_THRESHOLD = 1 << 20;
+
+	/** Approximate number of pixels per band of rows copied at once. */
+	private static final int BAND_SIZE = 1 << 16;
+
 	private AWTImageTools() {
 		// prevent instantiation of utility class
 	}
@@ -78,4 +99,212 @@ public final class AWTImageTools {
 		return result;
 	}
 
+	/**
+	 * Wraps the given plane's pixels as a {@link BufferedImage}, without
+	 * copying them.
+	 * <p>
+	 * The image shares the plane's backing array, so changes to either are
+	 * visible in both. Subclasses of {@link ARGBPlane} may compute their pixels
+	 * differently, so only planes of exactly that class can be wrapped.
+	 * </p>
+	 * 
+	 * @return The wrapping image, or null if the plane cannot be wrapped.
+	 */
+	public static BufferedImage wrap(final ARGBPlane plane) {
+		if (plane.getClass() != ARGBPlane.class) return null;
+		final int width = plane.getWidth();
+		final int height = plane.getHeight();
+		final DataBufferInt buffer =
+			new DataBufferInt(plane.getData(), width * height);
+		final SinglePixelPackedSampleModel model =
+			new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height,
+				ARGB_MASKS);
+		final WritableRaster raster =
+			Raster.createWritableRaster(model, buffer, null);
+		return new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+	}
+
+	/**
+	 * Copies the given plane's pixels into a new {@link BufferedImage} of type
+	 * {@link BufferedImage#TYPE_INT_ARGB}.
+	 * <p>
+	 * The pixels are written straight into the image's data buffer, row by row.
+	 * Large planes are copied in bands of rows, in parallel.
+	 * </p>
+	 */
+	public static BufferedImage toImage(final ARGBPlane plane) {
+		final int width = plane.getWidth();
+		final int height = plane.getHeight();
+		final BufferedImage image =
+			new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		final int[] dest =
+			((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		final int bandHeight = Math.max(1, BAND_SIZE / width);
+		final int bands = (height + bandHeight - 1) / bandHeight;
+		IntStream stream = IntStream.range(0, bands);
+		if ((long) width * height > PARALLEL_THRESHOLD) stream = stream.parallel();
+		stream.forEach(band -> {
+			final int y0 = band * bandHeight;
+			final int y1 = Math.min(y0 + bandHeight, height);
+			copyRows(plane, dest, y0, y1);
+		});
+		return image;
+	}
+
+	/**
+	 * Copies the given image's pixels into a new {@link ARGBPlane}.
+	 * <p>
+	 * Images backed by packed ARGB or RGB integers are copied straight from
+	 * their data buffer, as are images backed by interleaved ABGR or BGR bytes
+	 * (the layouts {@link javax.imageio.ImageIO} reads most PNG and JPEG files
+	 * into); other images are converted a band of rows at a time by their color
+	 * model. Large images are converted in parallel.
+	 * </p>
+	 */
+	public static ARGBPlane toPlane(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int[] dest = new int[width * height];
+		final int[] src = packedPixels(image);
+		final byte[] bytes = src == null ? interleavedBytes(image) : null;
+		final boolean opaque = image.getType() == BufferedImage.TYPE_INT_RGB;
+		final int bandHeight = Math.max(1, BAND_SIZE / width);
+		final int bands = (height + bandHeight - 1) / bandHeight;
+		IntStream stream = IntStream.range(0, bands);
+		if ((long) width * height > PARALLEL_THRESHOLD) stream = stream.parallel();
+		stream.forEach(band -> {
+			final int offset = band * bandHeight * width;
+			final int rows = Math.min(bandHeight, height - band * bandHeight);
+			final int length = rows * width;
+			if (bytes != null) {
+				copyBytes(image, bytes, dest, offset, length);
+				return;
+			}
+			if (src == null) {
+				image.getRGB(0, band * bandHeight, width, rows, dest, offset,
+					width);
+				return;
+			}
+			System.arraycopy(src, offset, dest, offset, length);
+			if (opaque) {
+				for (int i = offset; i < offset + length; i++) {
+					dest[i] |= 0xff000000;
+				}
+			}
+		});
+		return new ARGBPlane(width, height, dest);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Gets the byte array of an image holding interleaved ABGR or BGR bytes per
+	 * pixel, without gaps between rows.
+	 * 
+	 * @return The byte array, or null if the image has another layout.
+	 */
+	private static byte[] interleavedBytes(final BufferedImage image) {
+		final int type = image.getType();
+		final int pixelStride;
+		if (type == BufferedImage.TYPE_4BYTE_ABGR) pixelStride = 4;
+		else if (type == BufferedImage.TYPE_3BYTE_BGR) pixelStride = 3;
+		else return null;
+		final WritableRaster raster = image.getRaster();
+		if (raster.getParent() != null ||
+			raster.getSampleModelTranslateX() != 0 ||
+			raster.getSampleModelTranslateY() != 0 ||
+			!(raster.getSampleModel() instanceof PixelInterleavedSampleModel))
+		{
+			return null;
+		}
+		final PixelInterleavedSampleModel model =
+			(PixelInterleavedSampleModel) raster.getSampleModel();
+		final DataBuffer buffer = raster.getDataBuffer();
+		if (model.getPixelStride() != pixelStride ||
+			model.getScanlineStride() != pixelStride * image.getWidth() ||
+			buffer.getNumBanks() != 1 || buffer.getOffset() != 0)
+		{
+			return null;
+		}
+		return ((DataBufferByte) buffer).getData();
+	}
+
+	/**
+	 * Converts pixels [offset, offset + length) of an image with interleaved
+	 * bytes, as given by {@link #interleavedBytes(BufferedImage)}, to ARGB.
+	 */
+	private static void copyBytes(final BufferedImage image, final byte[] src,
+		final int[] dest, final int offset, final int length)
+	{
+		final int[] bandOffsets =
+			((PixelInterleavedSampleModel) image.getSampleModel())
+				.getBandOffsets();
+		final int r = bandOffsets[0], g = bandOffsets[1], b = bandOffsets[2];
+		final int end = offset + length;
+		if (bandOffsets.length == 4) {
+			final int a = bandOffsets[3];
+			for (int i = offset, s = 4 * offset; i < end; i++, s += 4) {
+				dest[i] = (src[s + a] & 0xff) << 24 | (src[s + r] & 0xff) << 16 |
+					(src[s + g] & 0xff) << 8 | (src[s + b] & 0xff);
+			}
+		}
+		else {
+			for (int i = offset, s = 3 * offset; i < end; i++, s += 3) {
+				dest[i] = 0xff000000 | (src[s + r] & 0xff) << 16 |
+					(src[s + g] & 0xff) << 8 | (src[s + b] & 0xff);
+			}
+		}
+	}
+
+	/**
+	 * Gets the pixel array of an image holding one packed ARGB or RGB integer
+	 * per pixel, without gaps between rows.
+	 * 
+	 * @return The pixel array, or null if the image has another layout.
+	 */
+	private static int[] packedPixels(final BufferedImage image) {
+		final int type = image.getType();
+		if (type != BufferedImage.TYPE_INT_ARGB &&
+			type != BufferedImage.TYPE_INT_RGB)
+		{
+			return null;
+		}
+		final WritableRaster raster = image.getRaster();
+		if (raster.getParent() != null ||
+			raster.getSampleModelTranslateX() != 0 ||
+			raster.getSampleModelTranslateY() != 0 ||
+			!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel))
+		{
+			return null;
+		}
+		final SinglePixelPackedSampleModel model =
+			(SinglePixelPackedSampleModel) raster.getSampleModel();
+		final DataBuffer buffer = raster.getDataBuffer();
+		if (model.getScanlineStride() != image.getWidth() ||
+			buffer.getNumBanks() != 1 || buffer.getOffset() != 0)
+		{
+			return null;
+		}
+		return ((DataBufferInt) buffer).getData();
+	}
+
+	/** Copies rows [y0, y1) of the plane into the given pixel array. */
+	private static void copyRows(final ARGBPlane plane, final int[] dest,
+		final int y0, final int y1)
+	{
+		final int width = plane.getWidth();
+		if (plane.getClass() == ARGBPlane.class) {
+			System.arraycopy(plane.getData(), y0 * width, dest, y0 * width,
+				(y1 - y0) * width);
+			return;
+		}
+		// NB: Subclasses may compute their pixels, so ask for each of them.
+		for (int y = y0; y < y1; y++) {
+			final int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				dest[offset + x] = plane.getARGB(x, y);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A {@link Transferable} offering a rendered image as an image, as a PNG file
+ * and as text.
+ * <p>
+ * Nothing is rendered until a flavor is actually requested. The image is then
+ * rendered once and kept, as is the PNG file written from it, so that drop
+ * targets asking repeatedly do not cause repeated work. The image is
+ * discarded by {@link #release()} once the drag has ended. The file is kept
+ * until the virtual machine exits, since drop targets such as file managers
+ * may still read or copy it after the drop has completed.
+ * </p>
+ */
+public class AWTImageTransferable implements Transferable {
+
+	private static final DataFlavor[] FLAVORS = { DataFlavor.imageFlavor,
+		DataFlavor.javaFileListFlavor, DataFlavor.stringFlavor };
+
+	private final String name;
+	private Supplier<BufferedImage> renderer;
+
+	/** The rendered image, or null if not rendered yet. */
+	private BufferedImage image;
+
+	/** The PNG file written from the image, or null if not written yet. */
+	private File file;
+
+	/** The temporary directory holding the PNG file, or null if none. */
+	private File dir;
+
+	/**
+	 * Creates a transferable for the given image.
+	 * 
+	 * @param name The name of the image, used as text and file name.
+	 * @param renderer Renders the image when first requested.
+	 */
+	public AWTImageTransferable(final String name,
+		final Supplier<BufferedImage> renderer)
+	{
+		this.name = name == null || name.isEmpty() ? "image" : name;
+		this.renderer = renderer;
+	}
+
+	// -- AWTImageTransferable methods --
+
+	/** Gets whether the image has been rendered. */
+	public synchronized boolean isRendered() {
+		return image != null;
+	}
+
+	/**
+	 * Gets the image, rendering it if necessary.
+	 * 
+	 * @throws IOException if the image could not be rendered.
+	 */
+	public synchronized BufferedImage getImage() throws IOException {
+		if (image == null) {
+			if (renderer == null) throw new IOException("Image is unavailable");
+			image = renderer.get();
+			if (image == null) throw new IOException("Image could not be rendered");
+			renderer = null;
+		}
+		return image;
+	}
+
+	/**
+	 * Gets a PNG file holding the image, writing it if necessary. The file is
+	 * deleted when the virtual machine exits.
+	 */
+	public synchronized File getFile() throws IOException {
+		if (file == null) {
+			final BufferedImage img = getImage();
+			final File d = Files.createTempDirectory("scijava-drag-").toFile();
+			d.deleteOnExit();
+			final File f = new File(d, fileName());
+			f.deleteOnExit();
+			dir = d;
+			file = f;
+			if (!ImageIO.write(img, "png", f)) {
+				deleteFile();
+				throw new IOException("No PNG writer available");
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Releases the rendered image. The written file, if any, is kept, since the
+	 * drop target may still need it.
+	 */
+	public synchronized void release() {
+		image = null;
+		renderer = null;
+	}
+
+	// -- Transferable methods --
+
+	@Override
+	public DataFlavor[] getTransferDataFlavors() {
+		return FLAVORS.clone();
+	}
+
+	@Override
+	public boolean isDataFlavorSupported(final DataFlavor flavor) {
+		for (final DataFlavor f : FLAVORS) {
+			if (f.equals(flavor)) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Object getTransferData(final DataFlavor flavor)
+		throws UnsupportedFlavorException, IOException
+	{
+		if (DataFlavor.imageFlavor.equals(flavor)) return getImage();
+		if (DataFlavor.javaFileListFlavor.equals(flavor)) {
+			final List<File> files = Collections.singletonList(getFile());
+			return files;
+		}
+		if (DataFlavor.stringFlavor.equals(flavor)) return name;
+		throw new UnsupportedFlavorException(flavor);
+	}
+
+	// -- Helper methods --
+
+	/** Deletes the PNG file and its directory, if any. */
+	private void deleteFile() {
+		if (file != null) {
+			if (!file.delete() && file.exists()) file.deleteOnExit();
+			file = null;
+		}
+		if (dir != null) {
+			if (!dir.delete() && dir.exists()) dir.deleteOnExit();
+			dir = null;
+		}
+	}
+
+	private String fileName() {
+		final String base = name.replaceAll("[^\\w.-]+", "_");
+		return base.toLowerCase().endsWith(".png") ? base : base + ".png";
+	}
+
+}
@@ -32,6 +32,9 @@
 package org.scijava.ui.awt;
 
 import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
@@ -40,6 +43,15 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.swing.Timer;
 
 import org.scijava.display.Display;
 import org.scijava.display.event.input.KyEvent;
@@ -59,32 +71,239 @@ import org.scijava.display.event.input.MsWheelEvent;
 import org.scijava.event.EventService;
 import org.scijava.input.InputModifiers;
 import org.scijava.input.KeyCode;
+import org.scijava.ui.awt.event.InputActiveEvent;
+import org.scijava.ui.awt.event.InputIdleEvent;
+import org.scijava.ui.awt.event.MsPreciseWheelEvent;
 
 /**
  * Rebroadcasts AWT {@link InputEvent}s as ImageJ
  * {@link org.scijava.display.event.input.InputEvent}s, translating
  * {@link KeyEvent}s into {@link KyEvent}s, and {@link MouseEvent}s into
  * {@link MsEvent}s.
+ * <p>
+ * By default, every AWT event is published immediately. When
+ * {@link #setCoalescing(boolean) coalescing} is enabled, bursts of mouse
+ * motion and wheel events are merged into a single {@link MsMovedEvent},
+ * {@link MsDraggedEvent} or {@link MsWheelEvent}, published once per event
+ * dispatch cycle (or once per {@link #setCoalesceInterval(int) interval}).
+ * Coalesced events carry the final pointer position and, for wheel events,
+ * the summed wheel rotation. Any other input event publishes the pending
+ * coalesced event first, so the relative order of events is preserved.
+ * </p>
+ * <p>
+ * Motion and wheel events can also be handed to an
+ * {@link #setAsyncPublisher(AWTAsyncEventPublisher) asynchronous publisher},
+ * so that slow subscribers do not block the AWT event dispatch thread. Key and
+ * button events are always published synchronously, so that consuming them
+ * still consumes the corresponding AWT events.
+ * </p>
+ * <p>
+ * With {@link #setPreciseWheel(boolean) precise wheel} handling, fractional
+ * wheel rotations reported by trackpads and high-resolution wheels are
+ * accumulated, and a wheel event is only published once a whole notch has been
+ * crossed (or, when coalescing, once per cycle as an
+ * {@link MsPreciseWheelEvent} carrying the accumulated amount).
+ * </p>
+ * <p>
+ * Every sampled pointer position can also be appended to a
+ * {@link #setPointerHistory(AWTPointerHistory) pointer history}, regardless of
+ * how many motion events are actually published.
+ * </p>
+ * <p>
+ * The current {@link #getPointerState() pointer state} and the set of
+ * {@link #isKeyDown(KeyCode) pressed keys} can be polled from any thread,
+ * without subscribing to high-frequency events. Since key releases are not
+ * received while a component lacks the keyboard focus, the pressed keys are
+ * forgotten whenever a component dispatching key events loses the focus.
+ * </p>
+ * <p>
+ * Latency-critical consumers can attach an {@link AWTInputSink}, which receives
+ * every input event as primitive values before it is published, and may
+ * consume it.
+ * </p>
+ * <p>
+ * Consumers processing input on their own threads can subscribe to the
+ * display's {@link #getInputFlow() input flow}, which delivers the published
+ * events according to each subscriber's demand.
+ * </p>
+ * <p>
+ * Auto-repeated key presses (a key pressed again without being released) can
+ * be throttled according to a {@link #setKeyRepeatPolicy(KeyRepeatPolicy) key
+ * repeat policy}, so that slow key handlers do not back up the event queue.
+ * </p>
+ * <p>
+ * When an {@link #setIdleTimeout(int) idle timeout} is set, an
+ * {@link InputIdleEvent} is published once no input has arrived for that long,
+ * and an {@link InputActiveEvent} is published upon the next input, before the
+ * input itself. Background work can thus run while the user is idle, and
+ * pause as soon as the user returns. Idleness is tracked per display: only
+ * input reaching this dispatcher counts, so a display is reported idle while
+ * the user works in another one. The idle timer stops once the last
+ * registration returned by {@link #attach} is closed.
+ * </p>
+ * <p>
+ * The latency of each published event can be measured by setting
+ * {@link #setLatencyStats(AWTInputLatencyStats) latency statistics}.
+ * </p>
  * 
  * @author Curtis Rueden
  * @author Grant Harris
  */
 public class AWTInputEventDispatcher implements KeyListener, MouseListener,
-	MouseMotionListener, MouseWheelListener
+	MouseMotionListener, MouseWheelListener, FocusListener
 {
 
-	/** Display associated with the dispatched events. */
-	private final Display<?> display;
+	/** Policies for publishing auto-repeated key presses. */
+	public enum KeyRepeatPolicy {
+		/** Publish every repeated key press. */
+		PASS_THROUGH,
+		/**
+		 * Publish at most {@link AWTInputEventDispatcher#getKeyRepeatRate()}
+		 * repeated key presses per second.
+		 */
+		RATE_LIMIT,
+		/**
+		 * Drop repeated key presses generated while the handlers of the previous
+		 * key press were still running.
+		 */
+		DROP_WHILE_BUSY
+	}
+
+	/** Default maximum rate of published key repeats, per second. */
+	public static final int DEFAULT_KEY_REPEAT_RATE = 10;
+
+	/** Display associated with the dispatched events, or null if none. */
+	private final WeakReference<Display<?>> display;
 
 	/** Event service to use when dispatching events. */
 	private final EventService eventService;
 
+	/** Open registrations of the dispatcher. */
+	private final Set<AWTRegistration> registrations = Collections
+		.synchronizedSet(Collections.newSetFromMap(
+			new IdentityHashMap<AWTRegistration, Boolean>()));
+
 	/** Last known mouse X coordinate. */
 	private int x = -1;
 
 	/** Last known mouse Y coordinate. */
 	private int y = -1;
 
+	/** Last known pointer position and buttons, packed by AWTPointerState. */
+	private volatile long pointerState = AWTPointerState.NONE;
+
+	/** Bit set of the AWT virtual key codes currently held down. */
+	private final AtomicLongArray pressedKeys = new AtomicLongArray(1 << 10);
+
+	/** Publisher for motion and wheel events, or null to publish them directly. */
+	private AWTAsyncEventPublisher asyncPublisher;
+
+	/** Demand-driven publisher of the events published by this dispatcher. */
+	private final AWTInputEventFlow inputFlow = new AWTInputEventFlow();
+
+	/** Sinks receiving raw input before publication. */
+	private volatile AWTInputSink[] sinks = new AWTInputSink[0];
+
+	/** How auto-repeated key presses are published. */
+	private KeyRepeatPolicy keyRepeatPolicy = KeyRepeatPolicy.PASS_THROUGH;
+
+	/** Maximum number of key repeats published per second. */
+	private int keyRepeatRate = DEFAULT_KEY_REPEAT_RATE;
+
+	/** Timestamp of the most recently published key press. */
+	private long lastKeyPressWhen;
+
+	/**
+	 * Time at which publication of the most recent key press finished, on the
+	 * clock of the key events' timestamps.
+	 */
+	private long lastKeyPressDone;
+
+	/** Character of the most recently dropped key repeat, to drop its key typed. */
+	private char droppedKeyChar = KeyEvent.CHAR_UNDEFINED;
+
+	/** Number of key repeats dropped so far. */
+	private long droppedKeyRepeats;
+
+	/** Time of the most recent input, as given by {@link System#nanoTime()}. */
+	private volatile long lastActivity = System.nanoTime();
+
+	/** Quiet period after which input is reported idle, in ms, or 0 if never. */
+	private int idleTimeout;
+
+	/** Whether input is currently reported idle. */
+	private volatile boolean idle;
+
+	/** Timer used to check whether the idle timeout has elapsed. */
+	private Timer idleTimer;
+
+	/** Whether a check of the idle timeout is scheduled. */
+	private boolean idleCheckScheduled;
+
+	/** Latency statistics to update, or null to skip measuring latencies. */
+	private AWTInputLatencyStats latencyStats;
+
+	/** Buffer receiving every sampled pointer position, or null if none. */
+	private AWTPointerHistory pointerHistory;
+
+	/** Whether wheel events are derived from the precise wheel rotation. */
+	private boolean preciseWheel;
+
+	/** Precise wheel rotation not yet published as a whole notch. */
+	private double wheelRemainder;
+
+	/** Whether motion and wheel events are coalesced before publication. */
+	private boolean coalescing;
+
+	/** Minimum delay between coalesced publications, in milliseconds. */
+	private int coalesceInterval;
+
+	/** Timer used to publish coalesced events after the coalesce interval. */
+	private Timer coalesceTimer;
+
+	/** Whether a publication of the pending coalesced event is scheduled. */
+	private boolean flushScheduled;
+
+	/** Publishes the pending coalesced event, if any. */
+	private final Runnable flusher = new Runnable() {
+
+		@Override
+		public void run() {
+			flushScheduled = false;
+			flush();
+		}
+	};
+
+	/** AWT event ID of the pending coalesced event, or 0 if none is pending. */
+	private int pendingID;
+
+	/** Timestamp of the oldest AWT event merged into the pending event. */
+	private long pendingWhen;
+
+	/** Extended modifiers of the pending coalesced event. */
+	private int pendingModifiers;
+
+	/** X coordinate of the pending coalesced event. */
+	private int pendingX;
+
+	/** Y coordinate of the pending coalesced event. */
+	private int pendingY;
+
+	/** Mouse button of the pending coalesced drag event. */
+	private int pendingButton;
+
+	/** Click count of the pending coalesced drag event. */
+	private int pendingClickCount;
+
+	/** Popup trigger flag of the pending coalesced drag event. */
+	private boolean pendingPopupTrigger;
+
+	/** Summed wheel rotation of the pending coalesced wheel event. */
+	private int pendingRotation;
+
+	/** Summed precise wheel rotation of the pending coalesced wheel event. */
+	private double pendingPreciseRotation;
+
 	/** Creates an AWT input event dispatcher for the given display. */
 	public AWTInputEventDispatcher(final Display<?> display) {
 		this(display, display.getContext().getService(EventService.class));
@@ -94,7 +313,7 @@ public class AWTInputEventDispatcher implements KeyListener, MouseListener,
 	public AWTInputEventDispatcher(final Display<?> display,
 		final EventService eventService)
 	{
-		this.display = display;
+		this.display = display == null ? null : new WeakReference<>(display);
 		this.eventService = eventService;
 	}
 
@@ -102,6 +321,12 @@ public class AWTInputEventDispatcher implements KeyListener, MouseListener,
 
 	/**
 	 * Attaches the event dispatcher to the given component as a listener.
+	 * <p>
+	 * To avoid adding listeners to each component, use
+	 * {@link AWTEventRouter#register(Component, AWTInputEventDispatcher, boolean, boolean)}
+	 * instead. To detach the dispatcher again, use
+	 * {@link #attach(Component, boolean, boolean)}.
+	 * </p>
 	 * 
 	 * @param c The component from which to rebroadcast events.
 	 * @param keyEvents True if key events should be dispatched.
@@ -110,7 +335,10 @@ public class AWTInputEventDispatcher implements KeyListener, MouseListener,
 	public void register(final Component c, final boolean keyEvents,
 		final boolean mouseEvents)
 	{
-		if (keyEvents) c.addKeyListener(this);
+		if (keyEvents) {
+			c.addKeyListener(this);
+			c.addFocusListener(this);
+		}
 		if (mouseEvents) {
 			c.addMouseListener(this);
 			c.addMouseMotionListener(this);
@@ -118,165 +346,658 @@ public class AWTInputEventDispatcher implements KeyListener, MouseListener,
 		}
 	}
 
+	/**
+	 * Attaches the event dispatcher to the given component as a listener, like
+	 * {@link #register(Component, boolean, boolean)}, returning a handle which
+	 * detaches the dispatcher again when closed. The handle closes
+	 * automatically once the display's window is closed.
+	 * 
+	 * @param c The component from which to rebroadcast events.
+	 * @param keyEvents True if key events should be dispatched.
+	 * @param mouseEvents True if mouse events should be dispatched.
+	 * @return The handle of the registration.
+	 */
+	public AWTRegistration attach(final Component c, final boolean keyEvents,
+		final boolean mouseEvents)
+	{
+		register(c, keyEvents, mouseEvents);
+		final AWTRegistration registration = new AWTRegistration(c, getDisplay(),
+			eventService, (r, component) -> unregister(component, keyEvents,
+				mouseEvents));
+		attached(registration);
+		return registration.open();
+	}
+
+	/**
+	 * Gets the display associated with the dispatched events, or null if there
+	 * is none or it is no longer available.
+	 * <p>
+	 * Once the display is no longer available, the dispatcher drops its events
+	 * instead of publishing them, and closes its registrations.
+	 * </p>
+	 */
+	public Display<?> getDisplay() {
+		return display == null ? null : display.get();
+	}
+
 	/** Gets the last known mouse X coordinate. */
 	public int getLastX() {
-		return x;
+		return AWTPointerState.getX(pointerState);
 	}
 
 	/** Gets the last known mouse Y coordinate. */
 	public int getLastY() {
-		return y;
+		return AWTPointerState.getY(pointerState);
+	}
+
+	/**
+	 * Gets the last known pointer position and mouse buttons, as a single
+	 * consistent snapshot which may be read from any thread. Use the methods of
+	 * {@link AWTPointerState} to unpack it.
+	 */
+	public long getPointerState() {
+		return pointerState;
+	}
+
+	/**
+	 * Gets whether the given key is currently held down. This method may be
+	 * called from any thread.
+	 */
+	public boolean isKeyDown(final KeyCode keyCode) {
+		return isKeyDown(keyCode.getCode());
+	}
+
+	/**
+	 * Gets whether the key with the given AWT virtual key code is currently held
+	 * down. This method may be called from any thread.
+	 */
+	public boolean isKeyDown(final int code) {
+		if (!isValidKeyCode(code)) return false;
+		return (pressedKeys.get(code >>> 6) & 1L << code) != 0;
+	}
+
+	/** Gets the set of keys currently held down. */
+	public Set<KeyCode> getPressedKeys() {
+		final Set<KeyCode> keys = EnumSet.noneOf(KeyCode.class);
+		for (int i = 0; i < pressedKeys.length(); i++) {
+			long bits = pressedKeys.get(i);
+			while (bits != 0) {
+				final int bit = Long.numberOfTrailingZeros(bits);
+				keys.add(AWTInputs.getKeyCode(i << 6 | bit));
+				bits &= bits - 1;
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Forgets all keys currently held down. This happens automatically when a
+	 * component dispatching key events loses the keyboard focus, since key
+	 * releases are then no longer received.
+	 */
+	public void clearPressedKeys() {
+		for (int i = 0; i < pressedKeys.length(); i++) {
+			pressedKeys.set(i, 0);
+		}
+	}
+
+	/**
+	 * Sets the publisher used to publish mouse motion and wheel events off the
+	 * AWT event dispatch thread.
+	 * <p>
+	 * Asynchronously published events may reach subscribers after key and button
+	 * events which occurred later, since the latter are always published
+	 * synchronously.
+	 * </p>
+	 * 
+	 * @param asyncPublisher The publisher to use, or null to publish all events
+	 *          synchronously.
+	 */
+	public void setAsyncPublisher(final AWTAsyncEventPublisher asyncPublisher) {
+		this.asyncPublisher = asyncPublisher;
+	}
+
+	/**
+	 * Gets the publisher used to publish mouse motion and wheel events off the
+	 * AWT event dispatch thread, or null if all events are published
+	 * synchronously.
+	 */
+	public AWTAsyncEventPublisher getAsyncPublisher() {
+		return asyncPublisher;
+	}
+
+	/**
+	 * Gets the publisher which delivers the events published by this dispatcher
+	 * to subscribers on other threads, honoring their demand. The flow is closed
+	 * once all registrations returned by {@link #attach} are closed.
+	 */
+	public AWTInputEventFlow getInputFlow() {
+		return inputFlow;
+	}
+
+	/**
+	 * Attaches a sink which receives every input event as primitive values, on
+	 * the AWT event dispatch thread, before the event is published. Sinks are
+	 * called in the order they were added.
+	 */
+	public synchronized void addInputSink(final AWTInputSink sink) {
+		final AWTInputSink[] newSinks = new AWTInputSink[sinks.length + 1];
+		System.arraycopy(sinks, 0, newSinks, 0, sinks.length);
+		newSinks[sinks.length] = sink;
+		sinks = newSinks;
+	}
+
+	/** Detaches the given input sink. */
+	public synchronized void removeInputSink(final AWTInputSink sink) {
+		for (int i = 0; i < sinks.length; i++) {
+			if (sinks[i] != sink) continue;
+			final AWTInputSink[] newSinks = new AWTInputSink[sinks.length - 1];
+			System.arraycopy(sinks, 0, newSinks, 0, i);
+			System.arraycopy(sinks, i + 1, newSinks, i, newSinks.length - i);
+			sinks = newSinks;
+			return;
+		}
+	}
+
+	/** Sets how auto-repeated key presses are published. */
+	public void setKeyRepeatPolicy(final KeyRepeatPolicy keyRepeatPolicy) {
+		this.keyRepeatPolicy = keyRepeatPolicy;
+	}
+
+	/** Gets how auto-repeated key presses are published. */
+	public KeyRepeatPolicy getKeyRepeatPolicy() {
+		return keyRepeatPolicy;
+	}
+
+	/**
+	 * Sets the maximum number of repeated key presses published per second,
+	 * when the {@link KeyRepeatPolicy#RATE_LIMIT} policy is in effect.
+	 */
+	public void setKeyRepeatRate(final int keyRepeatRate) {
+		if (keyRepeatRate <= 0) {
+			throw new IllegalArgumentException("Invalid rate: " + keyRepeatRate);
+		}
+		this.keyRepeatRate = keyRepeatRate;
+	}
+
+	/** Gets the maximum number of repeated key presses published per second. */
+	public int getKeyRepeatRate() {
+		return keyRepeatRate;
+	}
+
+	/** Gets the number of repeated key presses dropped so far. */
+	public long getDroppedKeyRepeatCount() {
+		return droppedKeyRepeats;
+	}
+
+	/**
+	 * Sets the quiet period after which input is reported idle.
+	 * <p>
+	 * Once no input has been dispatched for the given number of milliseconds,
+	 * an {@link InputIdleEvent} is published. The next input then publishes an
+	 * {@link InputActiveEvent}. Only input dispatched by this dispatcher is
+	 * considered, so the timeout applies to this display alone. This method
+	 * must be called on the AWT event dispatch thread.
+	 * </p>
+	 * 
+	 * @param timeout The quiet period in milliseconds, or 0 to disable idle
+	 *          detection.
+	 */
+	public void setIdleTimeout(final int timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("Negative idle timeout: " + timeout);
+		}
+		idleTimeout = timeout;
+		idle = false;
+		stopIdleTimer();
+		if (timeout > 0) scheduleIdleCheck(timeout);
+	}
+
+	/** Gets the quiet period after which input is reported idle, in ms. */
+	public int getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * Gets whether input is currently reported idle. This method may be called
+	 * from any thread.
+	 */
+	public boolean isIdle() {
+		return idle;
+	}
+
+	/**
+	 * Gets the time since the most recent input, in milliseconds. This method
+	 * may be called from any thread.
+	 */
+	public long getIdleTime() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivity);
+	}
+
+	/**
+	 * Sets the statistics in which to record the latency of each published event.
+	 * 
+	 * @param latencyStats The statistics to update, or null to stop measuring
+	 *          latencies.
+	 */
+	public void setLatencyStats(final AWTInputLatencyStats latencyStats) {
+		this.latencyStats = latencyStats;
+	}
+
+	/**
+	 * Gets the statistics in which the latency of each published event is
+	 * recorded, or null if latencies are not measured.
+	 */
+	public AWTInputLatencyStats getLatencyStats() {
+		return latencyStats;
+	}
+
+	/**
+	 * Sets whether mouse motion and wheel events are coalesced.
+	 * <p>
+	 * When enabled, consecutive {@link MsMovedEvent}s, {@link MsDraggedEvent}s
+	 * and {@link MsWheelEvent}s with identical modifiers are merged, and only
+	 * the most recent one (with summed wheel rotation) is published. Because
+	 * coalesced events are published after the originating AWT events have been
+	 * handled, consuming them has no effect on the AWT events.
+	 * </p>
+	 * <p>
+	 * Disabling coalescing publishes any pending coalesced event immediately.
+	 * Like all other methods of this class, this method must be called on the
+	 * AWT event dispatch thread.
+	 * </p>
+	 */
+	public void setCoalescing(final boolean coalescing) {
+		this.coalescing = coalescing;
+		if (!coalescing) flush();
+	}
+
+	/** Gets whether mouse motion and wheel events are coalesced. */
+	public boolean isCoalescing() {
+		return coalescing;
+	}
+
+	/**
+	 * Sets the minimum delay between publications of coalesced events.
+	 * 
+	 * @param interval The delay in milliseconds, or 0 to publish coalesced events
+	 *          once per cycle of the AWT event queue.
+	 */
+	public void setCoalesceInterval(final int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException("Negative interval: " + interval);
+		}
+		coalesceInterval = interval;
+	}
+
+	/** Gets the minimum delay between publications of coalesced events. */
+	public int getCoalesceInterval() {
+		return coalesceInterval;
+	}
+
+	/**
+	 * Sets the buffer to which every sampled pointer position (from mouse motion,
+	 * press and release events) is appended, before any coalescing.
+	 * 
+	 * @param pointerHistory The buffer to append to, or null to stop recording
+	 *          pointer positions.
+	 */
+	public void setPointerHistory(final AWTPointerHistory pointerHistory) {
+		this.pointerHistory = pointerHistory;
+	}
+
+	/**
+	 * Gets the buffer to which every sampled pointer position is appended, or
+	 * null if pointer positions are not recorded.
+	 */
+	public AWTPointerHistory getPointerHistory() {
+		return pointerHistory;
+	}
+
+	/**
+	 * Sets whether wheel events are derived from the precise wheel rotation.
+	 * <p>
+	 * When enabled, the {@link MouseWheelEvent#getPreciseWheelRotation() precise
+	 * wheel rotation} of each AWT wheel event is accumulated, and an
+	 * {@link MsWheelEvent} is published only when the accumulated rotation
+	 * crosses a whole notch. When {@link #setCoalescing(boolean) coalescing} is
+	 * also enabled, one {@link MsPreciseWheelEvent} is published per cycle
+	 * instead, carrying both the whole notches crossed and the exact accumulated
+	 * rotation.
+	 * </p>
+	 */
+	public void setPreciseWheel(final boolean preciseWheel) {
+		flush();
+		this.preciseWheel = preciseWheel;
+		wheelRemainder = 0;
+	}
+
+	/** Gets whether wheel events are derived from the precise wheel rotation. */
+	public boolean isPreciseWheel() {
+		return preciseWheel;
+	}
+
+	/** Publishes the pending coalesced motion or wheel event, if any. */
+	public void flush() {
+		final int id = pendingID;
+		if (id == 0) return;
+		pendingID = 0;
+		final Display<?> display = getDisplay();
+		final InputModifiers modifiers = createModifiers(pendingModifiers);
+		final MsEvent evt;
+		switch (id) {
+			case MouseEvent.MOUSE_MOVED:
+				evt = new MsMovedEvent(display, modifiers, pendingX, pendingY);
+				break;
+			case MouseEvent.MOUSE_DRAGGED:
+				evt = new MsDraggedEvent(display, modifiers, pendingX, pendingY,
+					pendingButton, pendingClickCount, pendingPopupTrigger);
+				break;
+			default:
+				if (preciseWheel) {
+					final int notches = accumulateWheel(pendingPreciseRotation);
+					evt = new MsPreciseWheelEvent(display, modifiers, pendingX, pendingY,
+						notches, pendingPreciseRotation);
+				}
+				else {
+					evt = new MsWheelEvent(display, modifiers, pendingX, pendingY,
+						pendingRotation);
+				}
+		}
+		publishMotion(evt, pendingWhen);
 	}
 
 	// -- KeyListener methods --
 
 	@Override
 	public void keyTyped(final KeyEvent e) {
+		activity();
+		flush();
+		if (sink(e, x, y, e.getKeyChar())) return;
+		if (droppedKeyChar != KeyEvent.CHAR_UNDEFINED &&
+			droppedKeyChar == e.getKeyChar())
+		{
+			// NB: Drop the key typed event belonging to a dropped key repeat.
+			droppedKeyChar = KeyEvent.CHAR_UNDEFINED;
+			return;
+		}
 		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		final char keyChar = e.getKeyChar();
-		final KeyCode keyCode = KeyCode.get(e.getKeyCode());
+		final KeyCode keyCode = AWTInputs.getKeyCode(e.getKeyCode());
 		final KyTypedEvent evt =
-			new KyTypedEvent(display, modifiers, x, y, keyChar, keyCode);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+			new KyTypedEvent(getDisplay(), modifiers, x, y, keyChar, keyCode);
+		if (publish(evt, e.getWhen())) e.consume();
 	}
 
 	@Override
 	public void keyPressed(final KeyEvent e) {
+		activity();
+		flush();
+		final boolean repeat = isKeyDown(e.getKeyCode());
+		setKeyDown(e.getKeyCode(), true);
+		if (sink(e, x, y, e.getKeyCode())) return;
+		droppedKeyChar = KeyEvent.CHAR_UNDEFINED;
+		if (repeat && dropKeyRepeat(e)) {
+			droppedKeyRepeats++;
+			droppedKeyChar = e.getKeyChar();
+			return;
+		}
+		lastKeyPressWhen = e.getWhen();
 		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		final char keyChar = e.getKeyChar();
-		final KeyCode keyCode = KeyCode.get(e.getKeyCode());
+		final KeyCode keyCode = AWTInputs.getKeyCode(e.getKeyCode());
 		final KyPressedEvent evt =
-			new KyPressedEvent(display, modifiers, x, y, keyChar, keyCode);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+			new KyPressedEvent(getDisplay(), modifiers, x, y, keyChar, keyCode);
+		final long start = System.nanoTime();
+		final boolean consumed = publish(evt, e.getWhen());
+		// NB: The event timestamps need not come from the system clock, so add
+		// the time spent publishing to the timestamp rather than reading a clock.
+		lastKeyPressDone = e.getWhen() +
+			TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		if (consumed) e.consume();
 	}
 
 	@Override
 	public void keyReleased(final KeyEvent e) {
+		activity();
+		flush();
+		setKeyDown(e.getKeyCode(), false);
+		droppedKeyChar = KeyEvent.CHAR_UNDEFINED;
+		if (sink(e, x, y, e.getKeyCode())) return;
 		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
-		final KeyCode keyCode = KeyCode.get(e.getKeyCode());
+		final KeyCode keyCode = AWTInputs.getKeyCode(e.getKeyCode());
 		final char keyChar = e.getKeyChar();
 		final KyReleasedEvent evt =
-			new KyReleasedEvent(display, modifiers, x, y, keyChar, keyCode);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+			new KyReleasedEvent(getDisplay(), modifiers, x, y, keyChar, keyCode);
+		if (publish(evt, e.getWhen())) e.consume();
+	}
+
+	// -- FocusListener methods --
+
+	@Override
+	public void focusGained(final FocusEvent e) {
+		// NB: No action needed.
+	}
+
+	@Override
+	public void focusLost(final FocusEvent e) {
+		// NB: Keys released elsewhere would otherwise stay down, so that their
+		// next press would be mistaken for an auto-repeat.
+		clearPressedKeys();
 	}
 
 	// -- MouseListener methods --
 
 	@Override
 	public void mouseClicked(final MouseEvent e) {
+		activity();
+		flush();
 		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		updateMouseCoords(e);
+		if (sink(e, x, y, mouseButton(e))) return;
 		final int clickCount = e.getClickCount();
 		final boolean isPopupTrigger = e.isPopupTrigger();
 		final MsClickedEvent evt =
-			new MsClickedEvent(display, modifiers, x, y, mouseButton(e), clickCount,
-				isPopupTrigger);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+			new MsClickedEvent(getDisplay(), modifiers, x, y, mouseButton(e),
+				clickCount, isPopupTrigger);
+		if (publish(evt, e.getWhen())) e.consume();
 	}
 
 	@Override
 	public void mousePressed(final MouseEvent e) {
+		activity();
+		flush();
 		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		updateMouseCoords(e);
+		recordPointer(e);
+		if (sink(e, x, y, mouseButton(e))) return;
 		final int clickCount = e.getClickCount();
 		final boolean isPopupTrigger = e.isPopupTrigger();
 		final MsPressedEvent evt =
-			new MsPressedEvent(display, modifiers, x, y, mouseButton(e), clickCount,
-				isPopupTrigger);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+			new MsPressedEvent(getDisplay(), modifiers, x, y, mouseButton(e),
+				clickCount, isPopupTrigger);
+		if (publish(evt, e.getWhen())) e.consume();
 	}
 
 	@Override
 	public void mouseReleased(final MouseEvent e) {
+		activity();
+		flush();
 		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		updateMouseCoords(e);
+		recordPointer(e);
+		if (sink(e, x, y, mouseButton(e))) return;
 		final int clickCount = e.getClickCount();
 		final boolean isPopupTrigger = e.isPopupTrigger();
 		final MsReleasedEvent evt =
-			new MsReleasedEvent(display, modifiers, x, y, mouseButton(e), clickCount,
-				isPopupTrigger);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+			new MsReleasedEvent(getDisplay(), modifiers, x, y, mouseButton(e),
+				clickCount, isPopupTrigger);
+		if (publish(evt, e.getWhen())) e.consume();
 	}
 
 	// -- MouseMotionListener methods --
 
 	@Override
 	public void mouseEntered(final MouseEvent e) {
+		activity();
+		flush();
 		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		updateMouseCoords(e);
-		final MsEnteredEvent evt = new MsEnteredEvent(display, modifiers, x, y);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+		if (sink(e, x, y, mouseButton(e))) return;
+		final MsEnteredEvent evt =
+			new MsEnteredEvent(getDisplay(), modifiers, x, y);
+		if (publish(evt, e.getWhen())) e.consume();
 	}
 
 	@Override
 	public void mouseExited(final MouseEvent e) {
+		activity();
+		flush();
 		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		updateMouseCoords(e);
-		final MsExitedEvent evt = new MsExitedEvent(display, modifiers, x, y);
+		final MsExitedEvent evt = new MsExitedEvent(getDisplay(), modifiers, x, y);
 		clearMouseCoords();
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+		if (sink(e, evt.getX(), evt.getY(), mouseButton(e))) return;
+		if (publish(evt, e.getWhen())) e.consume();
 	}
 
 	@Override
 	public void mouseDragged(final MouseEvent e) {
-		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
+		activity();
 		updateMouseCoords(e);
+		recordPointer(e);
+		if (sink(e, x, y, mouseButton(e))) return;
+		if (coalescing) {
+			coalesce(e, 0, 0);
+			return;
+		}
+		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		final int clickCount = e.getClickCount();
 		final boolean isPopupTrigger = e.isPopupTrigger();
 		final MsDraggedEvent evt =
-			new MsDraggedEvent(display, modifiers, x, y, mouseButton(e), clickCount,
-				isPopupTrigger);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+			new MsDraggedEvent(getDisplay(), modifiers, x, y, mouseButton(e),
+				clickCount, isPopupTrigger);
+		if (publishMotion(evt, e.getWhen())) e.consume();
 	}
 
 	@Override
 	public void mouseMoved(final MouseEvent e) {
-		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
+		activity();
 		updateMouseCoords(e);
-		final MsMovedEvent evt = new MsMovedEvent(display, modifiers, x, y);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+		recordPointer(e);
+		if (sink(e, x, y, mouseButton(e))) return;
+		if (coalescing) {
+			coalesce(e, 0, 0);
+			return;
+		}
+		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
+		final MsMovedEvent evt = new MsMovedEvent(getDisplay(), modifiers, x, y);
+		if (publishMotion(evt, e.getWhen())) e.consume();
 	}
 
 	// -- MouseWheelListener methods --
 
 	@Override
 	public void mouseWheelMoved(final MouseWheelEvent e) {
-		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
+		activity();
 		updateMouseCoords(e);
-		final int wheelRotation = e.getWheelRotation();
+		if (sink(e, x, y, e.getWheelRotation())) return;
+		if (coalescing) {
+			coalesce(e, e.getWheelRotation(), e.getPreciseWheelRotation());
+			return;
+		}
+		final int wheelRotation;
+		if (preciseWheel) {
+			wheelRotation = accumulateWheel(e.getPreciseWheelRotation());
+			if (wheelRotation == 0) return;
+		}
+		else wheelRotation = e.getWheelRotation();
+		final InputModifiers modifiers = createModifiers(e.getModifiersEx());
 		final MsWheelEvent evt =
-			new MsWheelEvent(display, modifiers, x, y, wheelRotation);
-		eventService.publish(evt);
-		if (evt.isConsumed()) e.consume();
+			new MsWheelEvent(getDisplay(), modifiers, x, y, wheelRotation);
+		if (publishMotion(evt, e.getWhen())) e.consume();
 	}
 
 	// -- Helper methods --
 
-	private InputModifiers createModifiers(final int modsEx) {
-		final boolean altDown = isOn(modsEx, InputEvent.ALT_DOWN_MASK);
-		final boolean altGrDown = isOn(modsEx, InputEvent.ALT_GRAPH_DOWN_MASK);
-		final boolean ctrlDown = isOn(modsEx, InputEvent.CTRL_DOWN_MASK);
-		final boolean metaDown = isOn(modsEx, InputEvent.META_DOWN_MASK);
-		final boolean shiftDown = isOn(modsEx, InputEvent.SHIFT_DOWN_MASK);
-		final boolean leftButtonDown = isOn(modsEx, InputEvent.BUTTON1_DOWN_MASK);
-		final boolean middleButtonDown = isOn(modsEx, InputEvent.BUTTON3_DOWN_MASK);
-		final boolean rightButtonDown = isOn(modsEx, InputEvent.BUTTON2_DOWN_MASK);
-		return new InputModifiers(altDown, altGrDown, ctrlDown, metaDown,
-			shiftDown, leftButtonDown, middleButtonDown, rightButtonDown);
+	/** Gets the event service to use when dispatching events. */
+	EventService getEventService() {
+		return eventService;
+	}
+
+	/**
+	 * Tracks the given registration of the dispatcher, until it is closed. Once
+	 * the last registration is closed, the {@link #getInputFlow() input flow} is
+	 * closed as well.
+	 */
+	void attached(final AWTRegistration registration) {
+		registrations.add(registration);
+		registration.addCloseHook(() -> detached(registration));
+	}
+
+	private void detached(final AWTRegistration registration) {
+		final boolean last;
+		synchronized (registrations) {
+			last = registrations.remove(registration) && registrations.isEmpty();
+		}
+		if (last) {
+			inputFlow.close();
+			EventQueue.invokeLater(this::stopIdleTimer);
+		}
+	}
+
+	/**
+	 * Checks whether the given display, as obtained from {@link #getDisplay()},
+	 * means that the display of the dispatcher is gone, rather than never set.
+	 * If so, the dispatcher is detached, and the event must be dropped.
+	 */
+	private boolean displayGone(final Display<?> d) {
+		if (d != null || display == null) return false;
+		detach();
+		return true;
+	}
+
+	/**
+	 * Detaches the dispatcher from everything it is attached to, discarding any
+	 * pending coalesced event.
+	 */
+	private void detach() {
+		pendingID = 0;
+		final AWTRegistration[] open;
+		synchronized (registrations) {
+			open = registrations.toArray(new AWTRegistration[registrations.size()]);
+		}
+		for (final AWTRegistration registration : open) {
+			registration.close();
+		}
+		if (open.length == 0) {
+			inputFlow.close();
+			EventQueue.invokeLater(this::stopIdleTimer);
+		}
+	}
+
+	/** Stops checking for idleness, until the next input arrives. */
+	private void stopIdleTimer() {
+		if (idleTimer != null) idleTimer.stop();
+		idleCheckScheduled = false;
+	}
+
+	private void unregister(final Component c, final boolean keyEvents,
+		final boolean mouseEvents)
+	{
+		if (keyEvents) {
+			c.removeKeyListener(this);
+			c.removeFocusListener(this);
+		}
+		if (mouseEvents) {
+			c.removeMouseListener(this);
+			c.removeMouseMotionListener(this);
+			c.removeMouseWheelListener(this);
+		}
 	}
 
-	private boolean isOn(final int modsEx, final int mask) {
-		return (modsEx & mask) != 0;
+	private InputModifiers createModifiers(final int modsEx) {
+		return AWTInputs.getModifiers(modsEx);
 	}
 
 	private int mouseButton(final MouseEvent e) {
@@ -296,11 +1017,215 @@ public class AWTInputEventDispatcher implements KeyListener, MouseListener,
 	private void updateMouseCoords(final MouseEvent e) {
 		x = e.getX();
 		y = e.getY();
+		pointerState = AWTPointerState.pack(x, y, AWTInputs.getButtonMask(e
+			.getModifiersEx()));
+	}
+
+	/** Appends the position of the given event to the pointer history. */
+	private void recordPointer(final MouseEvent e) {
+		final AWTPointerHistory history = pointerHistory;
+		if (history == null) return;
+		history.append(x, y, e.getWhen(), AWTInputs.getButtonMask(e
+			.getModifiersEx()));
 	}
 
 	/** Invalidates last known mouse coordinates. */
 	private void clearMouseCoords() {
 		x = y = -1;
+		pointerState = AWTPointerState.NONE;
+	}
+
+	private boolean isValidKeyCode(final int code) {
+		return code > 0 && code < pressedKeys.length() << 6;
+	}
+
+	/**
+	 * Marks the key with the given AWT virtual key code as held down or released.
+	 * Only the event dispatch thread modifies the bit set, so no compare-and-set
+	 * loop is needed.
+	 */
+	private void setKeyDown(final int code, final boolean down) {
+		if (!isValidKeyCode(code)) return;
+		final int index = code >>> 6;
+		final long bit = 1L << code;
+		final long bits = pressedKeys.get(index);
+		pressedKeys.set(index, down ? bits | bit : bits & ~bit);
+	}
+
+	/** Decides whether the given repeated key press should be dropped. */
+	private boolean dropKeyRepeat(final KeyEvent e) {
+		switch (keyRepeatPolicy) {
+			case RATE_LIMIT:
+				// NB: Compare without dividing, to be exact for any rate.
+				return (e.getWhen() - lastKeyPressWhen) * keyRepeatRate < 1000;
+			case DROP_WHILE_BUSY:
+				// NB: A repeat generated before the previous key press finished
+				// publishing has been waiting in the event queue meanwhile.
+				return e.getWhen() < lastKeyPressDone;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Passes the given event to the input sinks.
+	 * 
+	 * @return True iff a sink consumed the event.
+	 */
+	private boolean sink(final InputEvent e, final int sx, final int sy,
+		final int code)
+	{
+		for (final AWTInputSink sink : sinks) {
+			if (sink.input(e.getID(), sx, sy, e.getModifiersEx(), code)) {
+				e.consume();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Publishes the given event, recording its latency if requested.
+	 * 
+	 * @param evt The event to publish.
+	 * @param when The timestamp of the originating AWT event.
+	 * @return True iff the event was consumed.
+	 */
+	private boolean publish(final org.scijava.display.event.input.InputEvent evt,
+		final long when)
+	{
+		if (displayGone(evt.getDisplay())) return false;
+		final AWTInputLatencyStats stats = latencyStats;
+		if (stats == null) eventService.publish(evt);
+		else {
+			final long start = System.nanoTime();
+			final long queued = queueLatency(when);
+			eventService.publish(evt);
+			stats.record(evt.getClass(), queued, System.nanoTime() - start);
+		}
+		if (inputFlow.hasSubscribers()) inputFlow.offer(evt);
+		return evt.isConsumed();
+	}
+
+	/**
+	 * Publishes the given motion or wheel event, asynchronously if an
+	 * asynchronous publisher is set.
+	 * 
+	 * @param evt The event to publish.
+	 * @param when The timestamp of the originating AWT event.
+	 * @return True iff the event was published synchronously and consumed.
+	 */
+	private boolean publishMotion(final MsEvent evt, final long when) {
+		if (displayGone(evt.getDisplay())) return false;
+		final AWTAsyncEventPublisher publisher = asyncPublisher;
+		if (publisher == null) return publish(evt, when);
+		final AWTInputLatencyStats stats = latencyStats;
+		if (stats != null) stats.record(evt.getClass(), queueLatency(when), -1);
+		publisher.publish(evt);
+		if (inputFlow.hasSubscribers()) inputFlow.offer(evt);
+		return false;
+	}
+
+	/** Gets the time elapsed since the given AWT timestamp, in nanoseconds. */
+	private long queueLatency(final long when) {
+		return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - when);
+	}
+
+	/**
+	 * Merges the given motion or wheel event into the pending coalesced event,
+	 * publishing the latter first if the two cannot be merged.
+	 */
+	private void coalesce(final MouseEvent e, final int wheelRotation,
+		final double preciseWheelRotation)
+	{
+		final int id = e.getID();
+		final int modsEx = e.getModifiersEx();
+		if (pendingID != id || pendingModifiers != modsEx) {
+			flush();
+			pendingID = id;
+			pendingWhen = e.getWhen();
+			pendingModifiers = modsEx;
+			pendingRotation = 0;
+			pendingPreciseRotation = 0;
+			scheduleFlush();
+		}
+		pendingX = x;
+		pendingY = y;
+		pendingButton = mouseButton(e);
+		pendingClickCount = e.getClickCount();
+		pendingPopupTrigger = e.isPopupTrigger();
+		pendingRotation += wheelRotation;
+		pendingPreciseRotation += preciseWheelRotation;
+	}
+
+	/**
+	 * Adds the given precise wheel rotation to the accumulated rotation.
+	 * 
+	 * @return The number of whole notches crossed, which are removed from the
+	 *         accumulated rotation.
+	 */
+	private int accumulateWheel(final double preciseWheelRotation) {
+		wheelRemainder += preciseWheelRotation;
+		final int notches = (int) wheelRemainder;
+		wheelRemainder -= notches;
+		return notches;
+	}
+
+	/** Notes user input, ending any idle period. */
+	private void activity() {
+		final long previous = lastActivity;
+		final long now = System.nanoTime();
+		lastActivity = now;
+		if (idleTimeout == 0) return;
+		if (idle) {
+			idle = false;
+			final long idleTime = TimeUnit.NANOSECONDS.toMillis(now - previous);
+			final Display<?> d = getDisplay();
+			if (displayGone(d)) return;
+			eventService.publish(new InputActiveEvent(d, idleTime));
+		}
+		if (!idleCheckScheduled) scheduleIdleCheck(idleTimeout);
+	}
+
+	private void checkIdle() {
+		idleCheckScheduled = false;
+		if (idleTimeout == 0 || idle) return;
+		// NB: A display which is gone can no longer become active again.
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		final long quiet = getIdleTime();
+		if (quiet < idleTimeout) {
+			scheduleIdleCheck((int) (idleTimeout - quiet));
+			return;
+		}
+		idle = true;
+		eventService.publish(new InputIdleEvent(d, quiet));
+	}
+
+	private void scheduleIdleCheck(final int delay) {
+		idleCheckScheduled = true;
+		if (idleTimer == null) {
+			idleTimer = new Timer(delay, e -> checkIdle());
+			idleTimer.setRepeats(false);
+		}
+		idleTimer.setInitialDelay(delay);
+		idleTimer.restart();
+	}
+
+	/** Schedules publication of the pending coalesced event. */
+	private void scheduleFlush() {
+		if (flushScheduled) return;
+		flushScheduled = true;
+		if (coalesceInterval == 0) {
+			EventQueue.invokeLater(flusher);
+			return;
+		}
+		if (coalesceTimer == null) {
+			coalesceTimer = new Timer(coalesceInterval, e -> flusher.run());
+			coalesceTimer.setRepeats(false);
+		}
+		coalesceTimer.setInitialDelay(coalesceInterval);
+		coalesceTimer.restart();
 	}
 
 }
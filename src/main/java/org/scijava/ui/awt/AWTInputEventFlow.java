@@ -0,0 +1,364 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import org.scijava.display.event.input.InputEvent;
+import org.scijava.display.event.input.MsDraggedEvent;
+import org.scijava.display.event.input.MsMovedEvent;
+
+/**
+ * Publishes the input events of one display to subscribers which process them
+ * on their own threads, honoring each subscriber's demand.
+ * <p>
+ * The {@link Subscriber} and {@link Subscription} interfaces mirror those of
+ * {@code java.util.concurrent.Flow} (which is not available on Java 8), and
+ * follow the same protocol: a subscriber receives no more items than it has
+ * {@link Subscription#request(long) requested}, and all signals to one
+ * subscriber are delivered serially, on the executor given when subscribing.
+ * </p>
+ * <p>
+ * Offering an event never blocks. While a subscriber is behind, consecutive
+ * {@link MsMovedEvent}s (or {@link MsDraggedEvent}s) waiting in its buffer are
+ * conflated into the most recent one; all other events (keys, buttons, wheel)
+ * are delivered losslessly. If a subscriber falls so far behind that its buffer
+ * exceeds its capacity, it is cancelled and receives
+ * {@link Subscriber#onError(Throwable)}, so memory use stays bounded. A
+ * subscriber which throws from one of its methods is cancelled as well, and
+ * receives the exception through {@link Subscriber#onError(Throwable)}.
+ * </p>
+ * <p>
+ * The flow of an {@link AWTInputEventDispatcher} is closed, completing its
+ * subscribers, once all of the registrations returned by the dispatcher's
+ * {@code attach} methods are closed; this happens automatically when the
+ * display is closed.
+ * </p>
+ * 
+ * @see AWTInputEventDispatcher#getInputFlow()
+ */
+public class AWTInputEventFlow {
+
+	/** Default maximum number of buffered events per subscriber. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * A receiver of input events. Mirrors
+	 * {@code java.util.concurrent.Flow.Subscriber}.
+	 */
+	public interface Subscriber<T> {
+
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T item);
+
+		void onError(Throwable throwable);
+
+		void onComplete();
+	}
+
+	/**
+	 * Link between the publisher and one subscriber. Mirrors
+	 * {@code java.util.concurrent.Flow.Subscription}.
+	 */
+	public interface Subscription {
+
+		void request(long n);
+
+		void cancel();
+	}
+
+	private static final BufferedSubscription[] NONE =
+		new BufferedSubscription[0];
+
+	private volatile BufferedSubscription[] subscriptions = NONE;
+
+	private boolean closed;
+
+	// -- AWTInputEventFlow methods --
+
+	/**
+	 * Subscribes to the input events, using the default buffer capacity.
+	 * 
+	 * @param subscriber The subscriber to receive the events.
+	 * @param executor The executor on which to signal the subscriber.
+	 */
+	public void subscribe(final Subscriber<? super InputEvent> subscriber,
+		final Executor executor)
+	{
+		subscribe(subscriber, executor, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Subscribes to the input events.
+	 * 
+	 * @param subscriber The subscriber to receive the events.
+	 * @param executor The executor on which to signal the subscriber.
+	 * @param capacity The maximum number of events buffered for the subscriber.
+	 */
+	public void subscribe(final Subscriber<? super InputEvent> subscriber,
+		final Executor executor, final int capacity)
+	{
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		final BufferedSubscription s =
+			new BufferedSubscription(subscriber, executor, capacity);
+		synchronized (this) {
+			if (closed) s.complete();
+			else {
+				final BufferedSubscription[] newSubs =
+					new BufferedSubscription[subscriptions.length + 1];
+				System.arraycopy(subscriptions, 0, newSubs, 0, subscriptions.length);
+				newSubs[subscriptions.length] = s;
+				subscriptions = newSubs;
+			}
+		}
+		s.schedule();
+	}
+
+	/** Gets whether there are any active subscribers. */
+	public boolean hasSubscribers() {
+		return subscriptions.length > 0;
+	}
+
+	/** Gets the number of active subscribers. */
+	public int getSubscriberCount() {
+		return subscriptions.length;
+	}
+
+	/**
+	 * Offers the given event to all subscribers. This method never blocks.
+	 */
+	public void offer(final InputEvent event) {
+		for (final BufferedSubscription s : subscriptions) {
+			s.offer(event);
+		}
+	}
+
+	/**
+	 * Completes all subscriptions once their buffered events have been
+	 * delivered. Later subscribers are completed immediately.
+	 */
+	public void close() {
+		final BufferedSubscription[] subs;
+		synchronized (this) {
+			closed = true;
+			subs = subscriptions;
+			subscriptions = NONE;
+		}
+		for (final BufferedSubscription s : subs) {
+			s.complete();
+			s.schedule();
+		}
+	}
+
+	// -- Helper methods --
+
+	private synchronized void remove(final BufferedSubscription s) {
+		for (int i = 0; i < subscriptions.length; i++) {
+			if (subscriptions[i] != s) continue;
+			final BufferedSubscription[] newSubs =
+				new BufferedSubscription[subscriptions.length - 1];
+			System.arraycopy(subscriptions, 0, newSubs, 0, i);
+			System.arraycopy(subscriptions, i + 1, newSubs, i, newSubs.length - i);
+			subscriptions = newSubs;
+			return;
+		}
+	}
+
+	private static boolean isConflatable(final InputEvent event) {
+		return event instanceof MsMovedEvent || event instanceof MsDraggedEvent;
+	}
+
+	// -- Helper classes --
+
+	/** A subscription with its own bounded, conflating buffer. */
+	private class BufferedSubscription implements Subscription, Runnable {
+
+		private final Subscriber<? super InputEvent> subscriber;
+		private final Executor executor;
+		private final int capacity;
+
+		private final ArrayDeque<InputEvent> buffer = new ArrayDeque<>();
+		private long demand;
+		private boolean subscribed;
+		private boolean draining;
+		private boolean cancelled;
+		private boolean completed;
+		private Throwable error;
+
+		private BufferedSubscription(
+			final Subscriber<? super InputEvent> subscriber, final Executor executor,
+			final int capacity)
+		{
+			this.subscriber = subscriber;
+			this.executor = executor;
+			this.capacity = capacity;
+		}
+
+		// -- Subscription methods --
+
+		@Override
+		public void request(final long n) {
+			synchronized (this) {
+				if (n <= 0) {
+					fail(new IllegalArgumentException("Non-positive request: " + n));
+				}
+				else {
+					demand += n;
+					if (demand < 0) demand = Long.MAX_VALUE;
+				}
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				cancelled = true;
+				buffer.clear();
+			}
+			remove(this);
+		}
+
+		// -- Runnable methods --
+
+		/** Delivers pending signals to the subscriber, serially. */
+		@Override
+		public void run() {
+			boolean drained = false;
+			try {
+				drain();
+				drained = true;
+			}
+			catch (final RuntimeException exc) {
+				// NB: A failing subscriber is cancelled and told why, unless it failed
+				// while handling a terminal signal.
+				final boolean signal;
+				synchronized (this) {
+					signal = !cancelled;
+					cancelled = true;
+					buffer.clear();
+				}
+				remove(this);
+				if (signal) subscriber.onError(exc);
+			}
+			finally {
+				if (!drained) {
+					synchronized (this) {
+						draining = false;
+					}
+				}
+			}
+		}
+
+		// -- Helper methods --
+
+		/**
+		 * Delivers signals until none are pending, then clears the draining flag.
+		 */
+		private void drain() {
+			while (true) {
+				InputEvent item = null;
+				Throwable failure = null;
+				boolean subscribe = false, complete = false;
+				synchronized (this) {
+					if (!subscribed) subscribe = subscribed = true;
+					else if (cancelled) {
+						draining = false;
+						return;
+					}
+					else if (error != null) {
+						failure = error;
+						cancelled = true;
+					}
+					else if (!buffer.isEmpty() && demand > 0) {
+						item = buffer.poll();
+						demand--;
+					}
+					else if (buffer.isEmpty() && completed) {
+						complete = cancelled = true;
+					}
+					else {
+						draining = false;
+						return;
+					}
+				}
+				if (subscribe) subscriber.onSubscribe(this);
+				else if (failure != null) subscriber.onError(failure);
+				else if (complete) subscriber.onComplete();
+				else subscriber.onNext(item);
+			}
+		}
+
+		private void offer(final InputEvent event) {
+			synchronized (this) {
+				if (cancelled || completed) return;
+				if (isConflatable(event) && !buffer.isEmpty() &&
+					buffer.peekLast().getClass() == event.getClass())
+				{
+					buffer.pollLast();
+				}
+				buffer.add(event);
+				if (buffer.size() > capacity) {
+					fail(new IllegalStateException(
+						"Input event buffer overflow; subscriber is too slow"));
+				}
+				else if (demand == 0) return;
+			}
+			schedule();
+		}
+
+		private synchronized void complete() {
+			completed = true;
+		}
+
+		/** Records a failure, to be signaled by the next drain. */
+		private void fail(final Throwable t) {
+			if (error == null) error = t;
+			buffer.clear();
+			remove(this);
+		}
+
+		/** Ensures that a drain is scheduled on the executor. */
+		private void schedule() {
+			synchronized (this) {
+				if (draining) return;
+				draining = true;
+			}
+			executor.execute(this);
+		}
+	}
+
+}
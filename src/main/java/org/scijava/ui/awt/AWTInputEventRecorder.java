@@ -0,0 +1,301 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.Component;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records AWT {@link InputEvent}s as fixed-width binary records into a
+ * memory-mapped log file, for later replay with {@link AWTInputEventReplayer}.
+ * <p>
+ * The recorder is registered beside an {@link AWTInputEventDispatcher} on the
+ * same components, and captures exactly the input stream the dispatcher
+ * receives. The log starts with a {@value #HEADER_SIZE}-byte header (magic
+ * number, format version, record size and record count), followed by one
+ * {@value #RECORD_SIZE}-byte record per event: timestamp, event ID,
+ * coordinates, extended modifier bitmask, key code, key character, mouse
+ * button, click count, wheel rotation, flags and precise wheel rotation.
+ * </p>
+ * <p>
+ * The log has a fixed capacity; events arriving once it is full are counted
+ * but not recorded.
+ * </p>
+ */
+public class AWTInputEventRecorder implements KeyListener, MouseListener,
+	MouseMotionListener, MouseWheelListener, Closeable
+{
+
+	/** Magic number identifying an input event log ("SJIE"). */
+	static final int MAGIC = 0x534a4945;
+
+	/** Version of the log format. */
+	static final int VERSION = 1;
+
+	/** Size of the log header, in bytes. */
+	public static final int HEADER_SIZE = 16;
+
+	/** Size of each event record, in bytes. */
+	public static final int RECORD_SIZE = 56;
+
+	/**
+	 * Maximum number of events a log can hold, as the log is mapped into
+	 * memory at once and a single mapping cannot exceed 2 GiB.
+	 */
+	public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) /
+		RECORD_SIZE;
+
+	/** Byte offset of the record count within the header. */
+	static final int COUNT_OFFSET = 12;
+
+	/** Flag bit marking a popup trigger. */
+	static final int FLAG_POPUP_TRIGGER = 1;
+
+	/** Flag bit marking a block (rather than unit) wheel scroll. */
+	static final int FLAG_BLOCK_SCROLL = 1 << 1;
+
+	/** Bit offset of the wheel scroll amount within the flags. */
+	static final int SCROLL_AMOUNT_SHIFT = 8;
+
+	/** Bit offset of the key location within the flags. */
+	static final int KEY_LOCATION_SHIFT = 16;
+
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+
+	private int count;
+	private long overflow;
+
+	/**
+	 * Creates a recorder writing to the given file, which is created or
+	 * overwritten.
+	 * 
+	 * @param file The log file to write.
+	 * @param capacity The maximum number of events to record, at most
+	 *          {@link #MAX_CAPACITY}.
+	 */
+	public AWTInputEventRecorder(final File file, final int capacity)
+		throws IOException
+	{
+		if (capacity <= 0 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		this.capacity = capacity;
+		raf = new RandomAccessFile(file, "rw");
+		boolean mapped = false;
+		try {
+			final long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+			raf.setLength(size);
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			mapped = true;
+		}
+		finally {
+			if (!mapped) raf.close();
+		}
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+	}
+
+	// -- AWTInputEventRecorder methods --
+
+	/**
+	 * Attaches the recorder to the given component as a listener.
+	 * 
+	 * @param c The component from which to record events.
+	 * @param keyEvents True if key events should be recorded.
+	 * @param mouseEvents True if mouse events should be recorded.
+	 */
+	public void register(final Component c, final boolean keyEvents,
+		final boolean mouseEvents)
+	{
+		if (keyEvents) c.addKeyListener(this);
+		if (mouseEvents) {
+			c.addMouseListener(this);
+			c.addMouseMotionListener(this);
+			c.addMouseWheelListener(this);
+		}
+	}
+
+	/** Gets the number of events recorded so far. */
+	public synchronized int getRecordCount() {
+		return count;
+	}
+
+	/** Gets the number of events which did not fit into the log. */
+	public synchronized long getOverflowCount() {
+		return overflow;
+	}
+
+	// -- Closeable methods --
+
+	@Override
+	public synchronized void close() throws IOException {
+		buffer.force();
+		raf.close();
+	}
+
+	// -- KeyListener methods --
+
+	@Override
+	public void keyTyped(final KeyEvent e) {
+		recordKey(e);
+	}
+
+	@Override
+	public void keyPressed(final KeyEvent e) {
+		recordKey(e);
+	}
+
+	@Override
+	public void keyReleased(final KeyEvent e) {
+		recordKey(e);
+	}
+
+	// -- MouseListener methods --
+
+	@Override
+	public void mouseClicked(final MouseEvent e) {
+		recordMouse(e, 0, 0, 0);
+	}
+
+	@Override
+	public void mousePressed(final MouseEvent e) {
+		recordMouse(e, 0, 0, 0);
+	}
+
+	@Override
+	public void mouseReleased(final MouseEvent e) {
+		recordMouse(e, 0, 0, 0);
+	}
+
+	@Override
+	public void mouseEntered(final MouseEvent e) {
+		recordMouse(e, 0, 0, 0);
+	}
+
+	@Override
+	public void mouseExited(final MouseEvent e) {
+		recordMouse(e, 0, 0, 0);
+	}
+
+	// -- MouseMotionListener methods --
+
+	@Override
+	public void mouseDragged(final MouseEvent e) {
+		recordMouse(e, 0, 0, 0);
+	}
+
+	@Override
+	public void mouseMoved(final MouseEvent e) {
+		recordMouse(e, 0, 0, 0);
+	}
+
+	// -- MouseWheelListener methods --
+
+	@Override
+	public void mouseWheelMoved(final MouseWheelEvent e) {
+		int flags = e.getScrollAmount() << SCROLL_AMOUNT_SHIFT;
+		if (e.getScrollType() == MouseWheelEvent.WHEEL_BLOCK_SCROLL) {
+			flags |= FLAG_BLOCK_SCROLL;
+		}
+		recordMouse(e, e.getWheelRotation(), e.getPreciseWheelRotation(), flags);
+	}
+
+	// -- Helper methods --
+
+	private void recordKey(final KeyEvent e) {
+		record(e.getWhen(), e.getID(), 0, 0, e.getModifiersEx(), e.getKeyCode(),
+			e.getKeyChar(), 0, 0, 0, e.getKeyLocation() << KEY_LOCATION_SHIFT, 0);
+	}
+
+	private void recordMouse(final MouseEvent e, final int wheelRotation,
+		final double preciseWheelRotation, final int flags)
+	{
+		final int popup = e.isPopupTrigger() ? FLAG_POPUP_TRIGGER : 0;
+		record(e.getWhen(), e.getID(), e.getX(), e.getY(), e.getModifiersEx(), 0,
+			0, e.getButton(), e.getClickCount(), wheelRotation, flags | popup,
+			preciseWheelRotation);
+	}
+
+	private synchronized void record(final long when, final int id,
+		final int x, final int y, final int modsEx, final int keyCode,
+		final int keyChar, final int button, final int clickCount,
+		final int wheelRotation, final int flags,
+		final double preciseWheelRotation)
+	{
+		if (count == capacity) {
+			overflow++;
+			return;
+		}
+		// NB: The capacity is bounded so that every offset fits into an int.
+		int offset = (int) (HEADER_SIZE + (long) count * RECORD_SIZE);
+		buffer.putLong(offset, when);
+		offset += 8;
+		buffer.putInt(offset, id);
+		offset += 4;
+		buffer.putInt(offset, x);
+		offset += 4;
+		buffer.putInt(offset, y);
+		offset += 4;
+		buffer.putInt(offset, modsEx);
+		offset += 4;
+		buffer.putInt(offset, keyCode);
+		offset += 4;
+		buffer.putInt(offset, keyChar);
+		offset += 4;
+		buffer.putInt(offset, button);
+		offset += 4;
+		buffer.putInt(offset, clickCount);
+		offset += 4;
+		buffer.putInt(offset, wheelRotation);
+		offset += 4;
+		buffer.putInt(offset, flags);
+		offset += 4;
+		buffer.putDouble(offset, preciseWheelRotation);
+		count++;
+		buffer.putInt(COUNT_OFFSET, count);
+	}
+
+}
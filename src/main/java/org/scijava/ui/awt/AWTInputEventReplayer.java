@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.Component;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays an input event log written by {@link AWTInputEventRecorder} through
+ * an {@link AWTInputEventDispatcher}.
+ * <p>
+ * Events are reconstructed as AWT events with the given source component and
+ * handed to the dispatcher's listener methods on the calling thread, either at
+ * their original pace or as fast as possible. Since no native peer is needed,
+ * replay works under a headless toolkit, which makes it suitable for measuring
+ * subscriber throughput deterministically.
+ * </p>
+ */
+public class AWTInputEventReplayer {
+
+	private final MappedByteBuffer buffer;
+	private final int count;
+
+	/** Opens the given input event log for replay. */
+	public AWTInputEventReplayer(final File file) throws IOException {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf
+				.length());
+		}
+		if (buffer.capacity() < AWTInputEventRecorder.HEADER_SIZE ||
+			buffer.getInt(0) != AWTInputEventRecorder.MAGIC)
+		{
+			throw new IOException("Not an input event log: " + file);
+		}
+		final int version = buffer.getInt(4);
+		if (version != AWTInputEventRecorder.VERSION) {
+			throw new IOException("Unsupported input event log version: " + version);
+		}
+		if (buffer.getInt(8) != AWTInputEventRecorder.RECORD_SIZE) {
+			throw new IOException("Unexpected record size: " + buffer.getInt(8));
+		}
+		count = buffer.getInt(AWTInputEventRecorder.COUNT_OFFSET);
+		final long size = AWTInputEventRecorder.HEADER_SIZE + (long) count *
+			AWTInputEventRecorder.RECORD_SIZE;
+		if (count < 0 || size > buffer.capacity()) {
+			throw new IOException("Truncated input event log: " + file);
+		}
+	}
+
+	// -- AWTInputEventReplayer methods --
+
+	/** Gets the number of events in the log. */
+	public int getRecordCount() {
+		return count;
+	}
+
+	/** Gets the timestamp of the given recorded event. */
+	public long getWhen(final int index) {
+		return buffer.getLong(offset(index));
+	}
+
+	/**
+	 * Feeds all recorded events through the given dispatcher.
+	 * 
+	 * @param dispatcher The dispatcher to receive the events.
+	 * @param source The component to use as source of the reconstructed events.
+	 * @param realTime If true, events are replayed with their original timing;
+	 *          otherwise, they are replayed as fast as possible.
+	 * @return The time taken by the replay, in nanoseconds.
+	 */
+	public long replay(final AWTInputEventDispatcher dispatcher,
+		final Component source, final boolean realTime)
+	{
+		final long start = System.nanoTime();
+		final long firstWhen = count > 0 ? getWhen(0) : 0;
+		for (int i = 0; i < count; i++) {
+			if (realTime) {
+				final long due = start + TimeUnit.MILLISECONDS.toNanos(getWhen(i) -
+					firstWhen);
+				long wait;
+				while ((wait = due - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(wait);
+				}
+			}
+			dispatch(dispatcher, source, i);
+		}
+		return System.nanoTime() - start;
+	}
+
+	// -- Helper methods --
+
+	private int offset(final int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Invalid record: " + index);
+		}
+		return (int) (AWTInputEventRecorder.HEADER_SIZE + (long) index *
+			AWTInputEventRecorder.RECORD_SIZE);
+	}
+
+	private void dispatch(final AWTInputEventDispatcher d, final Component source,
+		final int index)
+	{
+		int offset = offset(index);
+		final long when = buffer.getLong(offset);
+		offset += 8;
+		final int id = buffer.getInt(offset);
+		offset += 4;
+		final int x = buffer.getInt(offset);
+		offset += 4;
+		final int y = buffer.getInt(offset);
+		offset += 4;
+		final int modsEx = buffer.getInt(offset);
+		offset += 4;
+		final int keyCode = buffer.getInt(offset);
+		offset += 4;
+		final char keyChar = (char) buffer.getInt(offset);
+		offset += 4;
+		final int button = buffer.getInt(offset);
+		offset += 4;
+		final int clickCount = buffer.getInt(offset);
+		offset += 4;
+		final int wheelRotation = buffer.getInt(offset);
+		offset += 4;
+		final int flags = buffer.getInt(offset);
+		offset += 4;
+		final double preciseWheelRotation = buffer.getDouble(offset);
+
+		final boolean popupTrigger =
+			(flags & AWTInputEventRecorder.FLAG_POPUP_TRIGGER) != 0;
+		switch (id) {
+			case KeyEvent.KEY_TYPED:
+				d.keyTyped(keyEvent(source, id, when, modsEx, keyCode, keyChar, flags));
+				break;
+			case KeyEvent.KEY_PRESSED:
+				d.keyPressed(keyEvent(source, id, when, modsEx, keyCode, keyChar,
+					flags));
+				break;
+			case KeyEvent.KEY_RELEASED:
+				d.keyReleased(keyEvent(source, id, when, modsEx, keyCode, keyChar,
+					flags));
+				break;
+			case MouseEvent.MOUSE_CLICKED:
+				d.mouseClicked(new MouseEvent(source, id, when, modsEx, x, y,
+					clickCount, popupTrigger, button));
+				break;
+			case MouseEvent.MOUSE_PRESSED:
+				d.mousePressed(new MouseEvent(source, id, when, modsEx, x, y,
+					clickCount, popupTrigger, button));
+				break;
+			case MouseEvent.MOUSE_RELEASED:
+				d.mouseReleased(new MouseEvent(source, id, when, modsEx, x, y,
+					clickCount, popupTrigger, button));
+				break;
+			case MouseEvent.MOUSE_ENTERED:
+				d.mouseEntered(new MouseEvent(source, id, when, modsEx, x, y,
+					clickCount, popupTrigger, button));
+				break;
+			case MouseEvent.MOUSE_EXITED:
+				d.mouseExited(new MouseEvent(source, id, when, modsEx, x, y,
+					clickCount, popupTrigger, button));
+				break;
+			case MouseEvent.MOUSE_DRAGGED:
+				d.mouseDragged(new MouseEvent(source, id, when, modsEx, x, y,
+					clickCount, popupTrigger, button));
+				break;
+			case MouseEvent.MOUSE_MOVED:
+				d.mouseMoved(new MouseEvent(source, id, when, modsEx, x, y,
+					clickCount, popupTrigger, button));
+				break;
+			case MouseEvent.MOUSE_WHEEL:
+				final int scrollType =
+					(flags & AWTInputEventRecorder.FLAG_BLOCK_SCROLL) != 0
+						? MouseWheelEvent.WHEEL_BLOCK_SCROLL
+						: MouseWheelEvent.WHEEL_UNIT_SCROLL;
+				final int scrollAmount =
+					(flags >> AWTInputEventRecorder.SCROLL_AMOUNT_SHIFT) & 0xff;
+				d.mouseWheelMoved(new MouseWheelEvent(source, id, when, modsEx, x, y,
+					x, y, clickCount, popupTrigger, scrollType, scrollAmount,
+					wheelRotation, preciseWheelRotation));
+				break;
+			default:
+				throw new IllegalStateException("Invalid event ID " + id +
+					" in record " + index);
+		}
+	}
+
+	private KeyEvent keyEvent(final Component source, final int id,
+		final long when, final int modsEx, final int keyCode, final char keyChar,
+		final int flags)
+	{
+		final int keyLocation =
+			(flags >> AWTInputEventRecorder.KEY_LOCATION_SHIFT) & 0xff;
+		return new KeyEvent(source, id, when, modsEx, keyCode, keyChar,
+			keyLocation);
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.scijava.event.SciJavaEvent;
+
+/**
+ * Input latency statistics, as collected by an {@link AWTInputEventDispatcher}.
+ * <p>
+ * For each type of published event (e.g.,
+ * {@link org.scijava.display.event.input.KyPressedEvent} or
+ * {@link org.scijava.display.event.input.MsDraggedEvent}), three
+ * {@link AWTLatencyHistogram}s are kept:
+ * </p>
+ * <ul>
+ * <li>the <em>queue</em> latency, from the AWT event's
+ * {@link java.awt.event.InputEvent#getWhen() timestamp} until publication
+ * starts, i.e. the time spent waiting in the AWT event queue;</li>
+ * <li>the <em>publish</em> latency, i.e. the time spent inside
+ * {@link org.scijava.event.EventService#publish};</li>
+ * <li>the <em>total</em> latency, the sum of both.</li>
+ * </ul>
+ * <p>
+ * AWT timestamps have millisecond resolution, so queue and total latencies are
+ * accurate to about a millisecond. Events handed to an
+ * {@link AWTAsyncEventPublisher} only have their queue latency recorded, since
+ * their publication does not block the event dispatch thread.
+ * </p>
+ */
+public class AWTInputLatencyStats {
+
+	/** The kinds of latency recorded for each event type. */
+	public enum Latency {
+		/** Time between the AWT event timestamp and the start of publication. */
+		QUEUE,
+		/** Time spent publishing the event to its subscribers. */
+		PUBLISH,
+		/** Total time between the AWT event timestamp and the end of publication. */
+		TOTAL
+	}
+
+	private final ConcurrentMap<Class<?>, AWTLatencyHistogram[]> histograms =
+		new ConcurrentHashMap<>();
+
+	// -- AWTInputLatencyStats methods --
+
+	/**
+	 * Records the latencies of one published event.
+	 * 
+	 * @param eventClass The type of the published event.
+	 * @param queueNanos Time from the AWT event timestamp until publication.
+	 * @param publishNanos Time spent publishing, or a negative value if not
+	 *          measured.
+	 */
+	public void record(final Class<? extends SciJavaEvent> eventClass,
+		final long queueNanos, final long publishNanos)
+	{
+		AWTLatencyHistogram[] h = histograms.get(eventClass);
+		if (h == null) {
+			final AWTLatencyHistogram[] created =
+				new AWTLatencyHistogram[Latency.values().length];
+			for (int i = 0; i < created.length; i++) {
+				created[i] = new AWTLatencyHistogram();
+			}
+			h = histograms.putIfAbsent(eventClass, created);
+			if (h == null) h = created;
+		}
+		h[Latency.QUEUE.ordinal()].record(queueNanos);
+		if (publishNanos < 0) return;
+		h[Latency.PUBLISH.ordinal()].record(publishNanos);
+		h[Latency.TOTAL.ordinal()].record(queueNanos + publishNanos);
+	}
+
+	/** Gets the types of events for which latencies have been recorded. */
+	public Set<Class<?>> getEventClasses() {
+		return Collections.unmodifiableSet(histograms.keySet());
+	}
+
+	/**
+	 * Gets the histogram of the given kind of latency for the given event type.
+	 * 
+	 * @return The histogram, or null if no events of the given type have been
+	 *         recorded.
+	 */
+	public AWTLatencyHistogram getHistogram(
+		final Class<? extends SciJavaEvent> eventClass, final Latency latency)
+	{
+		final AWTLatencyHistogram[] h = histograms.get(eventClass);
+		return h == null ? null : h[latency.ordinal()];
+	}
+
+	/** Discards all recorded latencies. */
+	public void reset() {
+		histograms.clear();
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (final Class<?> c : histograms.keySet()) {
+			final AWTLatencyHistogram[] h = histograms.get(c);
+			sb.append(c.getSimpleName());
+			for (final Latency latency : Latency.values()) {
+				sb.append("\n\t" + latency + ": " + h[latency.ordinal()]);
+			}
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+
+import org.scijava.display.event.input.MsButtonEvent;
+
+/**
+ * A latency-critical consumer of raw input, attached directly to an
+ * {@link AWTInputEventDispatcher}.
+ * <p>
+ * Sinks are called with primitive arguments for every AWT input event, before
+ * the dispatcher builds and publishes the corresponding ImageJ event. They
+ * bypass the {@link org.scijava.event.EventService} entirely, so no event
+ * object is created and no subscribers are looked up. Sinks are called on the
+ * AWT event dispatch thread, and must return quickly.
+ * </p>
+ * 
+ * @see AWTInputEventDispatcher#addInputSink(AWTInputSink)
+ */
+public interface AWTInputSink {
+
+	/**
+	 * Handles an input event.
+	 * 
+	 * @param type The AWT event ID, e.g. {@link MouseEvent#MOUSE_DRAGGED} or
+	 *          {@link KeyEvent#KEY_PRESSED}.
+	 * @param x The X coordinate of the pointer.
+	 * @param y The Y coordinate of the pointer.
+	 * @param modifiers The AWT extended modifiers; see
+	 *          {@link AWTInputs#getModifiers(int)}.
+	 * @param code The mouse button for mouse events (one of the
+	 *          {@link MsButtonEvent} button constants, or -1), the wheel rotation
+	 *          for wheel events, the key character for key typed events, and the
+	 *          AWT virtual key code for other key events.
+	 * @return True to consume the event, in which case it is not published, nor
+	 *         passed to any further sinks.
+	 */
+	boolean input(int type, int x, int y, int modifiers, int code);
+
+}
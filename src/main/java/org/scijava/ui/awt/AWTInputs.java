@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.event.InputEvent;
+
+import org.scijava.input.InputModifiers;
+import org.scijava.input.KeyCode;
+
+/**
+ * Translates AWT extended modifiers and key codes into ImageJ
+ * {@link InputModifiers} and {@link KeyCode}s.
+ * <p>
+ * All translations are table lookups into arrays computed once, so they never
+ * allocate. This matters on the AWT event dispatch thread, where every input
+ * event is translated.
+ * </p>
+ */
+public final class AWTInputs {
+
+	/** Button mask bit of the left mouse button. */
+	public static final int LEFT_BUTTON_MASK = 1;
+
+	/** Button mask bit of the middle mouse button. */
+	public static final int MIDDLE_BUTTON_MASK = 1 << 1;
+
+	/** Button mask bit of the right mouse button. */
+	public static final int RIGHT_BUTTON_MASK = 1 << 2;
+
+	/** Bit offset of the first modifier mask within the extended modifiers. */
+	private static final int MODIFIER_SHIFT = 6;
+
+	/** Number of distinct modifier combinations. */
+	private static final int MODIFIER_COUNT = 1 << 8;
+
+	/** Immutable modifiers, indexed by {@link #modifierIndex(int)}. */
+	private static final InputModifiers[] MODIFIERS = createModifierTable();
+
+	/** Key codes, indexed by AWT virtual key code. */
+	private static final KeyCode[] KEY_CODES = createKeyCodeTable();
+
+	private AWTInputs() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Gets the ImageJ {@link InputModifiers} corresponding to the given AWT
+	 * extended modifiers.
+	 * 
+	 * @param modsEx The extended modifiers, as returned by
+	 *          {@link InputEvent#getModifiersEx()}.
+	 * @return A shared, immutable {@link InputModifiers} instance.
+	 */
+	public static InputModifiers getModifiers(final int modsEx) {
+		return MODIFIERS[modifierIndex(modsEx)];
+	}
+
+	/**
+	 * Gets the ImageJ {@link KeyCode} corresponding to the given AWT virtual key
+	 * code. This is equivalent to {@link KeyCode#get(int)}, but without the
+	 * boxing and map lookup.
+	 */
+	public static KeyCode getKeyCode(final int code) {
+		if (code < 0 || code >= KEY_CODES.length) return KeyCode.UNDEFINED;
+		return KEY_CODES[code];
+	}
+
+	/**
+	 * Gets a compact mask of the mouse buttons held down according to the given
+	 * AWT extended modifiers, as a combination of {@link #LEFT_BUTTON_MASK},
+	 * {@link #MIDDLE_BUTTON_MASK} and {@link #RIGHT_BUTTON_MASK}.
+	 * <p>
+	 * The mapping of AWT buttons matches that of {@link #getModifiers(int)}.
+	 * </p>
+	 */
+	public static int getButtonMask(final int modsEx) {
+		int mask = 0;
+		if (isOn(modsEx, InputEvent.BUTTON1_DOWN_MASK)) mask |= LEFT_BUTTON_MASK;
+		if (isOn(modsEx, InputEvent.BUTTON3_DOWN_MASK)) mask |= MIDDLE_BUTTON_MASK;
+		if (isOn(modsEx, InputEvent.BUTTON2_DOWN_MASK)) mask |= RIGHT_BUTTON_MASK;
+		return mask;
+	}
+
+	/**
+	 * Packs the relevant AWT extended modifiers into a compact index between 0
+	 * and 255.
+	 * <p>
+	 * The eight modifier masks of interest ({@link InputEvent#SHIFT_DOWN_MASK}
+	 * through {@link InputEvent#ALT_GRAPH_DOWN_MASK}) occupy consecutive bits,
+	 * so the index is a single shift and mask.
+	 * </p>
+	 */
+	public static int modifierIndex(final int modsEx) {
+		return (modsEx >> MODIFIER_SHIFT) & (MODIFIER_COUNT - 1);
+	}
+
+	// -- Helper methods --
+
+	private static InputModifiers[] createModifierTable() {
+		final InputModifiers[] table = new InputModifiers[MODIFIER_COUNT];
+		for (int i = 0; i < table.length; i++) {
+			final int modsEx = i << MODIFIER_SHIFT;
+			final boolean altDown = isOn(modsEx, InputEvent.ALT_DOWN_MASK);
+			final boolean altGrDown = isOn(modsEx, InputEvent.ALT_GRAPH_DOWN_MASK);
+			final boolean ctrlDown = isOn(modsEx, InputEvent.CTRL_DOWN_MASK);
+			final boolean metaDown = isOn(modsEx, InputEvent.META_DOWN_MASK);
+			final boolean shiftDown = isOn(modsEx, InputEvent.SHIFT_DOWN_MASK);
+			final boolean leftButtonDown =
+				isOn(modsEx, InputEvent.BUTTON1_DOWN_MASK);
+			final boolean middleButtonDown =
+				isOn(modsEx, InputEvent.BUTTON3_DOWN_MASK);
+			final boolean rightButtonDown =
+				isOn(modsEx, InputEvent.BUTTON2_DOWN_MASK);
+			table[i] = new InputModifiers(altDown, altGrDown, ctrlDown, metaDown,
+				shiftDown, leftButtonDown, middleButtonDown, rightButtonDown);
+		}
+		return table;
+	}
+
+	private static KeyCode[] createKeyCodeTable() {
+		int maxCode = 0;
+		for (final KeyCode keyCode : KeyCode.values()) {
+			maxCode = Math.max(maxCode, keyCode.getCode());
+		}
+		final KeyCode[] table = new KeyCode[maxCode + 1];
+		for (int code = 0; code < table.length; code++) {
+			table[code] = KeyCode.get(code);
+		}
+		return table;
+	}
+
+	private static boolean isOn(final int modsEx, final int mask) {
+		return (modsEx & mask) != 0;
+	}
+
+}
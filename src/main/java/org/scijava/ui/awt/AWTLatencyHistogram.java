@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, with logarithmically
+ * sized buckets.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKETS} equally sized buckets,
+ * so recorded values are resolved to within 25% over the entire range of
+ * {@code long}, using a fixed amount of memory. Recording a value is a handful
+ * of atomic increments and never blocks, so histograms may be updated from the
+ * AWT event dispatch thread and queried from any other thread.
+ * </p>
+ */
+public class AWTLatencyHistogram {
+
+	/** Number of buckets per power of two. */
+	public static final int SUB_BUCKETS = 4;
+
+	/** log2 of {@link #SUB_BUCKETS}. */
+	private static final int SUB_BITS = 2;
+
+	/** Total number of buckets. */
+	private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	// -- AWTLatencyHistogram methods --
+
+	/** Records the given duration in nanoseconds. Negative values count as 0. */
+	public void record(final long nanos) {
+		final long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		long m;
+		while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+			// NB: Retry until the maximum is at least the recorded value.
+		}
+	}
+
+	/** Gets the number of recorded values. */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/** Gets the largest recorded value, in nanoseconds. */
+	public long getMax() {
+		return max.get();
+	}
+
+	/** Gets the mean of the recorded values, in nanoseconds. */
+	public double getMean() {
+		final long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Gets an upper bound for the given percentile of the recorded values.
+	 * 
+	 * @param percentile The percentile, between 0 and 100.
+	 * @return The upper bound of the bucket containing the percentile, in
+	 *         nanoseconds, or 0 if no values have been recorded.
+	 */
+	public long getPercentile(final double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Invalid percentile: " + percentile);
+		}
+		long total = 0;
+		final long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) return 0;
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	/** Discards all recorded values. */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d mean=%.0fns p50=%dns p99=%dns max=%dns",
+			getCount(), getMean(), getPercentile(50), getPercentile(99), getMax());
+	}
+
+	// -- Helper methods --
+
+	/** Gets the index of the bucket containing the given non-negative value. */
+	private static int bucket(final long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/** Gets the largest value contained in the given bucket. */
+	private static long upperBound(final int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		final int sub = bucket % SUB_BUCKETS;
+		final long width = 1L << (exponent - SUB_BITS);
+		final long lower = (SUB_BUCKETS + sub) * width;
+		return lower + (width - 1);
+	}
+
+}
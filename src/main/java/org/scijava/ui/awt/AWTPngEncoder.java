@@ -0,0 +1,344 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.stream.IntStream;
+
+/**
+ * Encodes images as 8-bit RGBA PNG files, compressing blocks of rows in
+ * parallel.
+ * <p>
+ * Each block of rows is filtered and deflated independently on the fork-join
+ * pool, primed with the end of the previous block as dictionary, and flushed
+ * to a byte boundary, so that the compressed blocks concatenate into a single
+ * zlib stream. The Adler-32 checksums of the blocks are combined rather than
+ * recomputed. Every row uses the Sub filter, which is cheap and works well for
+ * both photographs and synthetic images.
+ * </p>
+ * <p>
+ * Besides {@link BufferedImage}s, any source of ARGB {@link Rows} can be
+ * encoded, so that pixels which are not held in an image (such as pixels
+ * mapped from a file) need not be copied into one first.
+ * </p>
+ */
+public class AWTPngEncoder {
+
+	/** Default number of uncompressed bytes per block. */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r',
+		'\n', 26, '\n' };
+
+	/** zlib header for a deflate stream with a 32 KiB window. */
+	private static final byte[] ZLIB_HEADER = { 0x78, (byte) 0x9c };
+
+	/** Size of the deflate window, and thus of the useful dictionary. */
+	private static final int WINDOW_SIZE = 32768;
+
+	/** Modulus of the Adler-32 checksum. */
+	private static final int ADLER_BASE = 65521;
+
+	private final int level;
+	private final int blockSize;
+
+	/** Creates an encoder using the default compression level. */
+	public AWTPngEncoder() {
+		this(Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates an encoder.
+	 * 
+	 * @param level The {@link Deflater} compression level.
+	 * @param blockSize The number of uncompressed bytes per block; rows are
+	 *          never split across blocks.
+	 */
+	public AWTPngEncoder(final int level, final int blockSize) {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		}
+		this.level = level;
+		this.blockSize = blockSize;
+	}
+
+	// -- AWTPngEncoder methods --
+
+	/** Encodes the given image as PNG. */
+	public byte[] encode(final BufferedImage image) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			encode(image, out);
+		}
+		catch (final IOException exc) {
+			// NB: Writing to a byte array does not fail.
+			throw new IllegalStateException(exc);
+		}
+		return out.toByteArray();
+	}
+
+	/** Encodes the given image as PNG to the given stream. */
+	public void encode(final BufferedImage image, final OutputStream out)
+		throws IOException
+	{
+		encode(image.getWidth(), image.getHeight(), rows(image), out);
+	}
+
+	/**
+	 * Encodes an image of the given size as PNG.
+	 * 
+	 * @param rows The pixels of the image, which are read from several threads
+	 *          at once.
+	 */
+	public byte[] encode(final int width, final int height, final Rows rows) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			encode(width, height, rows, out);
+		}
+		catch (final IOException exc) {
+			// NB: Writing to a byte array does not fail.
+			throw new IllegalStateException(exc);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes an image of the given size as PNG to the given stream.
+	 * 
+	 * @param rows The pixels of the image, which are read from several threads
+	 *          at once.
+	 */
+	public void encode(final int width, final int height, final Rows rows,
+		final OutputStream out) throws IOException
+	{
+		final int rowBytes = 1 + 4 * width;
+		final int blockRows = Math.max(1, blockSize / rowBytes);
+		final int blockCount = (height + blockRows - 1) / blockRows;
+
+		final Block[] blocks = IntStream.range(0, blockCount).parallel().mapToObj(
+			i -> compress(width, rows, i * blockRows, Math.min(height, (i + 1) *
+				blockRows), i == blockCount - 1)).toArray(Block[]::new);
+
+		final DataOutputStream data = new DataOutputStream(out);
+		data.write(SIGNATURE);
+		final ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+		final DataOutputStream ihdr = new DataOutputStream(header);
+		ihdr.writeInt(width);
+		ihdr.writeInt(height);
+		ihdr.writeByte(8); // bit depth
+		ihdr.writeByte(6); // color type: RGBA
+		ihdr.writeByte(0); // compression method: deflate
+		ihdr.writeByte(0); // filter method: adaptive
+		ihdr.writeByte(0); // interlace method: none
+		writeChunk(data, "IHDR", header.toByteArray(), 0, header.size());
+
+		long adler = 1;
+		writeChunk(data, "IDAT", ZLIB_HEADER, 0, ZLIB_HEADER.length);
+		for (final Block block : blocks) {
+			writeChunk(data, "IDAT", block.data, 0, block.data.length);
+			adler = combineAdler(adler, block.adler, block.rawLength);
+		}
+		final byte[] trailer = { (byte) (adler >>> 24), (byte) (adler >>> 16),
+			(byte) (adler >>> 8), (byte) adler };
+		writeChunk(data, "IDAT", trailer, 0, trailer.length);
+		writeChunk(data, "IEND", new byte[0], 0, 0);
+		data.flush();
+	}
+
+	// -- Helper methods --
+
+	/** Gets the rows of the given image. */
+	private static Rows rows(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int[] pixels = pixels(image);
+		if (pixels != null) {
+			return (y, row) -> System.arraycopy(pixels, y * width, row, 0, width);
+		}
+		return (y, row) -> image.getRGB(0, y, width, 1, row, 0, width);
+	}
+
+	/** Filters and deflates rows [y0, y1) of the image. */
+	private Block compress(final int width, final Rows rows, final int y0,
+		final int y1, final boolean last)
+	{
+		final int rowBytes = 1 + 4 * width;
+		final int[] row = new int[width];
+
+		// NB: Filter the last rows of the previous block too, to serve as the
+		// dictionary. Since each row is filtered on its own, they come out the
+		// same as when that block filtered them.
+		final int dictRows = y0 == 0 ? 0 : Math.min(y0, (WINDOW_SIZE +
+			rowBytes - 1) / rowBytes);
+		final int start = y0 - dictRows;
+		final byte[] raw = new byte[(y1 - start) * rowBytes];
+		for (int y = start; y < y1; y++) {
+			rows.get(y, row);
+			filterRow(row, width, raw, (y - start) * rowBytes);
+		}
+		final int offset = dictRows * rowBytes;
+		final int length = raw.length - offset;
+
+		final Deflater deflater = new Deflater(level, true);
+		try {
+			if (dictRows > 0) {
+				final int dictLength = Math.min(offset, WINDOW_SIZE);
+				deflater.setDictionary(raw, offset - dictLength, dictLength);
+			}
+			deflater.setInput(raw, offset, length);
+			if (last) deflater.finish();
+			final ByteArrayOutputStream out =
+				new ByteArrayOutputStream(length / 4 + 64);
+			final byte[] buf = new byte[65536];
+			final int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+			while (true) {
+				final int n = deflater.deflate(buf, 0, buf.length, flush);
+				out.write(buf, 0, n);
+				if (last ? deflater.finished() : n < buf.length &&
+					deflater.needsInput()) break;
+			}
+			final Adler32 adler = new Adler32();
+			adler.update(raw, offset, length);
+			return new Block(out.toByteArray(), length, adler.getValue());
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	/** Converts a row of ARGB pixels to RGBA bytes, applying the Sub filter. */
+	private static void filterRow(final int[] src, final int width,
+		final byte[] raw, final int offset)
+	{
+		raw[offset] = 1; // filter type: Sub
+		int prev = 0;
+		for (int x = 0, i = offset + 1; x < width; x++, i += 4) {
+			final int argb = src[x];
+			raw[i] = (byte) ((argb >>> 16) - (prev >>> 16));
+			raw[i + 1] = (byte) ((argb >>> 8) - (prev >>> 8));
+			raw[i + 2] = (byte) (argb - prev);
+			raw[i + 3] = (byte) ((argb >>> 24) - (prev >>> 24));
+			prev = argb;
+		}
+	}
+
+	/**
+	 * Gets the pixel array of the given image, if it stores non-premultiplied
+	 * ARGB pixels row by row without padding, or null otherwise.
+	 */
+	private static int[] pixels(final BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB) return null;
+		if (!(image.getRaster().getDataBuffer() instanceof DataBufferInt)) {
+			return null;
+		}
+		final DataBufferInt buffer =
+			(DataBufferInt) image.getRaster().getDataBuffer();
+		if (buffer.getNumBanks() != 1 || buffer.getOffset() != 0) return null;
+		if (image.getRaster().getParent() != null) return null;
+		if (!(image.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+			return null;
+		}
+		final SinglePixelPackedSampleModel model =
+			(SinglePixelPackedSampleModel) image.getSampleModel();
+		if (model.getScanlineStride() != image.getWidth()) return null;
+		return buffer.getData();
+	}
+
+	/** Combines the Adler-32 checksums of two consecutive byte sequences. */
+	private static long combineAdler(final long adler1, final long adler2,
+		final long length2)
+	{
+		final long rem = length2 % ADLER_BASE;
+		long sum1 = adler1 & 0xffff;
+		long sum2 = rem * sum1 % ADLER_BASE;
+		sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+		sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) +
+			ADLER_BASE - rem;
+		if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+		if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+		if (sum2 >= (ADLER_BASE << 1)) sum2 -= ADLER_BASE << 1;
+		if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+		return sum1 | (sum2 << 16);
+	}
+
+	private static void writeChunk(final DataOutputStream out,
+		final String type, final byte[] data, final int offset, final int length)
+		throws IOException
+	{
+		final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, offset, length);
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, offset, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	// -- Helper classes --
+
+	/** Source of the pixels of an image, row by row. */
+	public interface Rows {
+
+		/**
+		 * Gets the non-premultiplied ARGB pixels of the given row.
+		 * 
+		 * @param y The index of the row.
+		 * @param row The array receiving the pixels of the row.
+		 */
+		void get(int y, int[] row);
+	}
+
+	/** A compressed block of rows. */
+	private static class Block {
+
+		private final byte[] data;
+		private final int rawLength;
+		private final long adler;
+
+		private Block(final byte[] data, final int rawLength, final long adler) {
+			this.data = data;
+			this.rawLength = rawLength;
+			this.adler = adler;
+		}
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ring buffer of sampled pointer positions, for tools which need the exact
+ * path of the pointer (e.g., freehand strokes).
+ * <p>
+ * Samples are stored in primitive arrays: x and y coordinates, timestamp and
+ * button mask (see {@link AWTInputs#getButtonMask(int)}). Appending never
+ * allocates or blocks, and must be done by a single thread (typically the AWT
+ * event dispatch thread, via {@link AWTInputEventDispatcher}). Samples may be
+ * drained in bulk from any thread. When the buffer overflows, the oldest
+ * samples are overwritten, and counted as lost when next drained.
+ * </p>
+ * <p>
+ * Since samples are appended before any coalescing or throttling of motion
+ * events, the history remains exact even when few motion events are
+ * published.
+ * </p>
+ */
+public class AWTPointerHistory {
+
+	private final int[] xs;
+	private final int[] ys;
+	private final long[] whens;
+	private final int[] buttons;
+
+	/** Length of the arrays minus one; the length is a power of two. */
+	private final int mask;
+
+	/** Total number of samples appended so far. */
+	private final AtomicLong head = new AtomicLong();
+
+	/** Total number of samples drained or lost so far. */
+	private long tail;
+
+	/** Number of samples overwritten before being drained. */
+	private long lost;
+
+	/**
+	 * Creates a pointer history holding at least the given number of samples.
+	 * <p>
+	 * One array slot is reserved for the sample currently being appended, and
+	 * the arrays are sized to a power of two, so the actual
+	 * {@link #getCapacity() capacity} may be larger than requested.
+	 * </p>
+	 */
+	public AWTPointerHistory(final int capacity) {
+		if (capacity <= 0 || capacity >= 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		final int length = Integer.highestOneBit(capacity) << 1;
+		xs = new int[length];
+		ys = new int[length];
+		whens = new long[length];
+		buttons = new int[length];
+		mask = length - 1;
+	}
+
+	// -- AWTPointerHistory methods --
+
+	/** Gets the maximum number of samples held. */
+	public int getCapacity() {
+		return mask;
+	}
+
+	/**
+	 * Appends a sample, overwriting the oldest one if the buffer is full. This
+	 * method must only be called by a single thread.
+	 */
+	public void append(final int x, final int y, final long when,
+		final int buttonMask)
+	{
+		final long h = head.get();
+		final int i = (int) h & mask;
+		xs[i] = x;
+		ys[i] = y;
+		whens[i] = when;
+		buttons[i] = buttonMask;
+		head.lazySet(h + 1);
+	}
+
+	/** Gets the total number of samples appended so far. */
+	public long getAppendedCount() {
+		return head.get();
+	}
+
+	/** Gets the number of samples which were overwritten before being drained. */
+	public synchronized long getLostCount() {
+		return lost;
+	}
+
+	/** Gets the number of samples waiting to be drained. */
+	public synchronized int available() {
+		return (int) Math.min(head.get() - tail, getCapacity());
+	}
+
+	/**
+	 * Removes the oldest samples from the buffer, copying them into the given
+	 * arrays.
+	 * 
+	 * @param x Array to receive the x coordinates.
+	 * @param y Array to receive the y coordinates.
+	 * @param when Array to receive the timestamps.
+	 * @param buttonMask Array to receive the button masks.
+	 * @return The number of samples copied, at most the length of the shortest
+	 *         array.
+	 */
+	public synchronized int drain(final int[] x, final int[] y,
+		final long[] when, final int[] buttonMask)
+	{
+		final int capacity = getCapacity();
+		final int max = Math.min(Math.min(x.length, y.length), Math.min(
+			when.length, buttonMask.length));
+		final long h = head.get();
+		long start = tail;
+		if (h - start > capacity) {
+			lost += h - start - capacity;
+			start = h - capacity;
+		}
+		int n = (int) Math.min(h - start, max);
+		copy(start, n, x, y, when, buttonMask);
+
+		// NB: The writer may have overwritten some of the copied samples in the
+		// meantime, including the one it is currently writing.
+		final long oldestIntact = head.get() - capacity;
+		if (start < oldestIntact) {
+			final int overwritten = (int) Math.min(oldestIntact - start, n);
+			lost += overwritten;
+			n -= overwritten;
+			System.arraycopy(x, overwritten, x, 0, n);
+			System.arraycopy(y, overwritten, y, 0, n);
+			System.arraycopy(when, overwritten, when, 0, n);
+			System.arraycopy(buttonMask, overwritten, buttonMask, 0, n);
+			start += overwritten;
+		}
+		tail = start + n;
+		return n;
+	}
+
+	/** Discards all samples waiting to be drained. */
+	public synchronized void clear() {
+		tail = head.get();
+	}
+
+	// -- Helper methods --
+
+	private void copy(final long start, final int n, final int[] x,
+		final int[] y, final long[] when, final int[] buttonMask)
+	{
+		final int first = (int) start & mask;
+		final int firstLength = Math.min(n, xs.length - first);
+		final int secondLength = n - firstLength;
+		System.arraycopy(xs, first, x, 0, firstLength);
+		System.arraycopy(ys, first, y, 0, firstLength);
+		System.arraycopy(whens, first, when, 0, firstLength);
+		System.arraycopy(buttons, first, buttonMask, 0, firstLength);
+		if (secondLength == 0) return;
+		System.arraycopy(xs, 0, x, firstLength, secondLength);
+		System.arraycopy(ys, 0, y, firstLength, secondLength);
+		System.arraycopy(whens, 0, when, firstLength, secondLength);
+		System.arraycopy(buttons, 0, buttonMask, firstLength, secondLength);
+	}
+
+}
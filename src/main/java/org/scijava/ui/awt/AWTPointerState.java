@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+/**
+ * Packs a pointer position and button mask into a single {@code long}, so that
+ * the pointer state can be published and read atomically, without locks.
+ * <p>
+ * The x and y coordinates occupy 24 bits each (and are clamped to that range),
+ * and the button mask (see {@link AWTInputs#getButtonMask(int)}) the lowest 16
+ * bits.
+ * </p>
+ * 
+ * @see AWTInputEventDispatcher#getPointerState()
+ */
+public final class AWTPointerState {
+
+	/** Smallest coordinate which can be packed. */
+	public static final int MIN_COORDINATE = -(1 << 23);
+
+	/** Largest coordinate which can be packed. */
+	public static final int MAX_COORDINATE = (1 << 23) - 1;
+
+	/** The state of a pointer outside the display, with no buttons held. */
+	public static final long NONE = pack(-1, -1, 0);
+
+	private AWTPointerState() {
+		// prevent instantiation of utility class
+	}
+
+	/** Packs the given pointer position and button mask. */
+	public static long pack(final int x, final int y, final int buttonMask) {
+		return (long) clamp(x) << 40 | ((long) clamp(y) & 0xffffff) << 16 |
+			buttonMask & 0xffff;
+	}
+
+	/** Gets the x coordinate of the given packed pointer state. */
+	public static int getX(final long state) {
+		return (int) (state >> 40);
+	}
+
+	/** Gets the y coordinate of the given packed pointer state. */
+	public static int getY(final long state) {
+		return (int) (state << 24 >> 40);
+	}
+
+	/** Gets the button mask of the given packed pointer state. */
+	public static int getButtonMask(final long state) {
+		return (int) state & 0xffff;
+	}
+
+	// -- Helper methods --
+
+	private static int clamp(final int coordinate) {
+		return Math.max(MIN_COORDINATE, Math.min(MAX_COORDINATE, coordinate));
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+import org.scijava.display.Display;
+import org.scijava.display.event.window.WinClosedEvent;
+import org.scijava.event.EventHandler;
+import org.scijava.event.EventService;
+import org.scijava.event.EventSubscriber;
+
+/**
+ * Handle of an AWT event dispatcher attached to a component.
+ * <p>
+ * Closing the handle detaches the dispatcher from the component again. The
+ * handle also closes itself when a {@link WinClosedEvent} is published for its
+ * display, or for the window containing its component, so that dispatchers of
+ * closed displays do not keep their components and displays alive.
+ * </p>
+ * <p>
+ * The handle refers to its component and display only weakly. It is kept
+ * alive by the dispatcher (or {@link AWTEventRouter} route) it belongs to, and
+ * releases everything it refers to once closed.
+ * </p>
+ */
+public final class AWTRegistration implements AutoCloseable {
+
+	/** The registered component. */
+	private final WeakReference<Component> component;
+
+	/** The display whose window closing closes the handle, or null if none. */
+	private final WeakReference<Display<?>> display;
+
+	/** Detaches the dispatcher from the component; null once closed. */
+	private BiConsumer<AWTRegistration, Component> unregister;
+
+	/** Event service to which the handle subscribes, or null if none. */
+	private EventService eventService;
+
+	/** Subscribers listening for {@link WinClosedEvent}s. */
+	private List<EventSubscriber<?>> subscribers;
+
+	/** Actions to run once the handle is closed. */
+	private final List<Runnable> closeHooks = new CopyOnWriteArrayList<>();
+
+	AWTRegistration(final Component c, final Display<?> display,
+		final EventService eventService,
+		final BiConsumer<AWTRegistration, Component> unregister)
+	{
+		component = new WeakReference<>(c);
+		this.display = display == null ? null : new WeakReference<>(display);
+		this.unregister = unregister;
+		this.eventService = eventService;
+	}
+
+	// -- AWTRegistration methods --
+
+	/** Gets the registered component, or null if it is no longer available. */
+	public Component getComponent() {
+		return component.get();
+	}
+
+	/** Gets whether the handle has been closed. */
+	public synchronized boolean isClosed() {
+		return unregister == null;
+	}
+
+	// -- AutoCloseable methods --
+
+	/** Detaches the dispatcher from the component. Does nothing if closed. */
+	@Override
+	public void close() {
+		final BiConsumer<AWTRegistration, Component> u;
+		final EventService es;
+		final List<EventSubscriber<?>> subs;
+		synchronized (this) {
+			if (unregister == null) return;
+			u = unregister;
+			es = eventService;
+			subs = subscribers;
+			unregister = null;
+			eventService = null;
+			subscribers = null;
+		}
+		final Component c = component.get();
+		component.clear();
+		if (c != null) u.accept(this, c);
+		if (es != null && subs != null) es.unsubscribe(subs);
+		for (final Runnable hook : closeHooks) {
+			hook.run();
+		}
+		closeHooks.clear();
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final WinClosedEvent evt) {
+		if (closes(evt)) close();
+	}
+
+	// -- Helper methods --
+
+	/** Starts listening for the closing of the display or window. */
+	AWTRegistration open() {
+		final EventService es;
+		synchronized (this) {
+			es = eventService;
+		}
+		if (es == null) return this;
+		final List<EventSubscriber<?>> subs = es.subscribe(this);
+		final boolean closed;
+		synchronized (this) {
+			closed = unregister == null;
+			if (!closed) subscribers = subs;
+		}
+		if (closed && subs != null) es.unsubscribe(subs);
+		return this;
+	}
+
+	/**
+	 * Adds an action to run once the handle is closed, or runs it right away if
+	 * the handle is closed already.
+	 */
+	void addCloseHook(final Runnable hook) {
+		synchronized (this) {
+			if (unregister != null) {
+				closeHooks.add(hook);
+				return;
+			}
+		}
+		hook.run();
+	}
+
+	private boolean closes(final WinClosedEvent evt) {
+		if (display != null) {
+			final Display<?> d = display.get();
+			// NB: A display which is gone can no longer receive any events.
+			if (d == null || d == evt.getDisplay()) return true;
+		}
+		final Component c = component.get();
+		if (c == null) return true;
+		final Object w = evt.getWindow();
+		return w == c || w instanceof Container && ((Container) w).isAncestorOf(c);
+	}
+
+}
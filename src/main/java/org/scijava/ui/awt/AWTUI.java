@@ -41,6 +41,7 @@ import org.scijava.Priority;
 import org.scijava.app.AppService;
 import org.scijava.display.Display;
 import org.scijava.event.EventService;
+import org.scijava.log.LogService;
 import org.scijava.menu.MenuService;
 import org.scijava.platform.event.AppMenusCreatedEvent;
 import org.scijava.plugin.Parameter;
@@ -75,6 +76,9 @@ public class AWTUI extends AbstractUserInterface {
 	@Parameter
 	private MenuService menuService;
 
+	@Parameter(required = false)
+	private LogService log;
+
 	private AWTApplicationFrame frame;
 	private AWTToolBar toolBar;
 	private AWTStatusBar statusBar;
@@ -147,7 +151,7 @@ public class AWTUI extends AbstractUserInterface {
 		toolBar = new AWTToolBar(getContext());
 		statusBar = new AWTStatusBar(getContext());
 
-		systemClipboard = new AWTClipboard();
+		systemClipboard = new AWTClipboard(log);
 
 		createMenus();
 
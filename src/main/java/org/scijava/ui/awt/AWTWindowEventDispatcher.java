@@ -35,6 +35,10 @@ package org.scijava.ui.awt;
 import java.awt.Window;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import org.scijava.display.Display;
 import org.scijava.display.event.window.WinActivatedEvent;
@@ -59,12 +63,19 @@ public class AWTWindowEventDispatcher implements WindowListener {
 	// not implementing WindowStateListener windowStateChanged(WindowEvent) and
 	// not implementing WindowFocusListener windowFocusGained/Lost(WindowEvent)
 
-	private final Display<?> display;
+	/** Display associated with the dispatched events, or null if none. */
+	private final WeakReference<Display<?>> display;
+
 	private final EventService eventService;
 
+	/** Open registrations of the dispatcher. */
+	private final Set<AWTRegistration> registrations = Collections
+		.synchronizedSet(Collections.newSetFromMap(
+			new IdentityHashMap<AWTRegistration, Boolean>()));
+
 	/** Creates an AWT window event dispatcher for the given display. */
 	public AWTWindowEventDispatcher(final Display<?> display) {
-		this.display = display;
+		this.display = new WeakReference<>(display);
 		eventService = display.getContext().getService(EventService.class);
 	}
 
@@ -79,45 +90,122 @@ public class AWTWindowEventDispatcher implements WindowListener {
 
 	// -- AWTWindowEventDispatcher methods --
 
+	/**
+	 * Attaches the event dispatcher to the given window as a listener.
+	 * <p>
+	 * To avoid adding listeners to each window, use
+	 * {@link AWTEventRouter#register(Window, AWTWindowEventDispatcher)} instead.
+	 * To detach the dispatcher again, use {@link #attach(Window)}.
+	 * </p>
+	 */
 	public void register(final Window w) {
 		w.addWindowListener(this);
 	}
 
+	/**
+	 * Attaches the event dispatcher to the given window as a listener, like
+	 * {@link #register(Window)}, returning a handle which detaches the
+	 * dispatcher again when closed. The handle closes automatically once the
+	 * window is closed.
+	 * 
+	 * @return The handle of the registration.
+	 */
+	public AWTRegistration attach(final Window w) {
+		register(w);
+		final AWTRegistration registration = new AWTRegistration(w, getDisplay(),
+			eventService, (r, c) -> {
+				registrations.remove(r);
+				((Window) c).removeWindowListener(this);
+			});
+		registrations.add(registration);
+		return registration.open();
+	}
+
+	/**
+	 * Gets the display associated with the dispatched events, or null if there
+	 * is none or it is no longer available.
+	 * <p>
+	 * Once the display is no longer available, the dispatcher drops its events
+	 * instead of publishing them, and closes its registrations.
+	 * </p>
+	 */
+	public Display<?> getDisplay() {
+		return display == null ? null : display.get();
+	}
+
 	// -- WindowListener methods --
 
 	@Override
 	public void windowActivated(final WindowEvent e) {
-		eventService.publish(new WinActivatedEvent(display, e.getWindow()));
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		eventService.publish(new WinActivatedEvent(d, e.getWindow()));
 	}
 
 	@Override
 	public void windowClosed(final WindowEvent e) {
-		eventService.publish(new WinClosedEvent(display, e.getWindow()));
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		eventService.publish(new WinClosedEvent(d, e.getWindow()));
 	}
 
 	@Override
 	public void windowClosing(final WindowEvent e) {
-		eventService.publish(new WinClosingEvent(display, e.getWindow()));
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		eventService.publish(new WinClosingEvent(d, e.getWindow()));
 	}
 
 	@Override
 	public void windowDeactivated(final WindowEvent e) {
-		eventService.publish(new WinDeactivatedEvent(display, e.getWindow()));
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		eventService.publish(new WinDeactivatedEvent(d, e.getWindow()));
 	}
 
 	@Override
 	public void windowDeiconified(final WindowEvent e) {
-		eventService.publish(new WinDeiconifiedEvent(display, e.getWindow()));
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		eventService.publish(new WinDeiconifiedEvent(d, e.getWindow()));
 	}
 
 	@Override
 	public void windowIconified(final WindowEvent e) {
-		eventService.publish(new WinIconifiedEvent(display, e.getWindow()));
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		eventService.publish(new WinIconifiedEvent(d, e.getWindow()));
 	}
 
 	@Override
 	public void windowOpened(final WindowEvent e) {
-		eventService.publish(new WinOpenedEvent(display, e.getWindow()));
+		final Display<?> d = getDisplay();
+		if (displayGone(d)) return;
+		eventService.publish(new WinOpenedEvent(d, e.getWindow()));
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Checks whether the given display, as obtained from {@link #getDisplay()},
+	 * means that the display of the dispatcher is gone, rather than never set.
+	 * If so, the dispatcher is detached, and the event must be dropped.
+	 */
+	private boolean displayGone(final Display<?> d) {
+		if (d != null || display == null) return false;
+		final AWTRegistration[] open;
+		synchronized (registrations) {
+			open = registrations.toArray(new AWTRegistration[registrations.size()]);
+		}
+		for (final AWTRegistration registration : open) {
+			registration.close();
+		}
+		return true;
+	}
+
+	/** Gets the event service to use when dispatching events. */
+	EventService getEventService() {
+		return eventService;
 	}
 
 }
@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt.event;
+
+import org.scijava.display.Display;
+import org.scijava.display.event.input.MsWheelEvent;
+import org.scijava.input.InputModifiers;
+
+/**
+ * An {@link MsWheelEvent} which also carries the precise, possibly fractional
+ * wheel rotation reported by high-resolution wheels and trackpads.
+ * <p>
+ * {@link #getWheelRotation()} is the number of whole notches crossed, while
+ * {@link #getPreciseWheelRotation()} is the exact amount of rotation since the
+ * previous wheel event. Summed over time, both agree.
+ * </p>
+ */
+public class MsPreciseWheelEvent extends MsWheelEvent {
+
+	private final double preciseWheelRotation;
+
+	public MsPreciseWheelEvent(final Display<?> display,
+		final InputModifiers modifiers, final int x, final int y,
+		final int wheelRotation, final double preciseWheelRotation)
+	{
+		super(display, modifiers, x, y, wheelRotation);
+		this.preciseWheelRotation = preciseWheelRotation;
+	}
+
+	// -- MsPreciseWheelEvent methods --
+
+	public double getPreciseWheelRotation() {
+		return preciseWheelRotation;
+	}
+
+	// -- Object methods --
+
+	@Override
+	public String toString() {
+		return super.toString() + "\n\tprecise wheel rotation = " +
+			preciseWheelRotation;
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.scijava.event.EventService;
+import org.scijava.event.SciJavaEvent;
+
+/**
+ * Tests {@link AWTAsyncEventPublisher}.
+ */
+public class AWTAsyncEventPublisherTest {
+
+	private final List<Object> published = new ArrayList<>();
+
+	private final List<Runnable> tasks = new ArrayList<>();
+
+	@Test
+	public void testOrderedDelivery() {
+		AWTAsyncEventPublisher publisher =
+			new AWTAsyncEventPublisher(eventService(), tasks::add, 8);
+		List<SciJavaEvent> events = events(5);
+		for (SciJavaEvent event : events) publisher.publish(event);
+
+		// Only one drain task is scheduled for the whole burst.
+		assertEquals(1, tasks.size());
+		assertEquals(5, publisher.getQueueDepth());
+		assertEquals(0, published.size());
+
+		tasks.remove(0).run();
+		assertEquals(events, published);
+		assertEquals(0, publisher.getQueueDepth());
+		assertEquals(5, publisher.getPublishedCount());
+		assertEquals(0, publisher.getDroppedCount());
+	}
+
+	@Test
+	public void testDropOldest() {
+		AWTAsyncEventPublisher publisher =
+			new AWTAsyncEventPublisher(eventService(), tasks::add, 3);
+		List<SciJavaEvent> events = events(5);
+		for (SciJavaEvent event : events) publisher.publish(event);
+
+		assertEquals(3, publisher.getQueueDepth());
+		assertEquals(2, publisher.getDroppedCount());
+
+		tasks.remove(0).run();
+		assertEquals(events.subList(2, 5), published);
+		assertSame(events.get(4), published.get(2));
+	}
+
+	private List<SciJavaEvent> events(int count) {
+		List<SciJavaEvent> events = new ArrayList<>();
+		for (int i = 0; i < count; i++) events.add(new SciJavaEvent() {});
+		return events;
+	}
+
+	private EventService eventService() {
+		return (EventService) Proxy.newProxyInstance(getClass().getClassLoader(),
+			new Class<?>[] { EventService.class }, (obj, method, args) -> {
+				if (method.getName().equals("publish")) published.add(args[0]);
+				return null;
+			});
+	}
+
+}
@@ -0,0 +1,317 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.scijava.ui.ARGBPlane;
+
+/**
+ * Tests {@link AWTClipboard}.
+ */
+public class AWTClipboardTest {
+
+	@Test
+	public void testCachedImage() throws Exception {
+		final AWTClipboard clipboard = clipboard();
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(4, 3));
+		final Transferable contents = clipboard.getContents();
+		assertEquals(48, clipboard.getMemoryUsage());
+
+		final Object image = contents.getTransferData(DataFlavor.imageFlavor);
+		assertSame(image, contents.getTransferData(DataFlavor.imageFlavor));
+		assertSame(image, clipboard.getTransferData(DataFlavor.imageFlavor));
+		// NB: The image shares the pixels of the plane.
+		assertEquals(48, clipboard.getMemoryUsage());
+	}
+
+	@Test
+	public void testLazyEncoding() throws Exception {
+		final AWTClipboard clipboard = clipboard();
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(4, 3));
+		final Transferable contents = clipboard.getContents();
+
+		// NB: Nothing is encoded until the PNG data is requested.
+		contents.getTransferData(DataFlavor.imageFlavor);
+		assertEquals(48, clipboard.getMemoryUsage());
+
+		// The encoding is kept for later requests.
+		final int pngBytes = pngBytes(contents);
+		assertEquals(48 + pngBytes, clipboard.getMemoryUsage());
+		assertEquals(pngBytes, pngBytes(contents));
+		assertEquals(48 + pngBytes, clipboard.getMemoryUsage());
+	}
+
+	@Test
+	public void testPngFlavors() throws Exception {
+		final AWTClipboard clipboard = clipboard();
+		final int[] pixels = new int[12];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 0x80000000 | 0x10101 * i;
+		}
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(4, 3, pixels));
+		final Transferable contents = clipboard.getContents();
+		assertTrue(contents.isDataFlavorSupported(AWTClipboard.PNG_FLAVOR));
+		assertTrue(contents.isDataFlavorSupported(DataFlavor.javaFileListFlavor));
+
+		final BufferedImage image;
+		try (final InputStream in = (InputStream) contents.getTransferData(
+			AWTClipboard.PNG_FLAVOR))
+		{
+			image = ImageIO.read(in);
+		}
+		assertPixels(pixels, image);
+		assertTrue(clipboard.getMemoryUsage() > 48);
+
+		final List<?> files = (List<?>) contents.getTransferData(
+			DataFlavor.javaFileListFlavor);
+		assertEquals(1, files.size());
+		final File file = (File) files.get(0);
+		assertPixels(pixels, ImageIO.read(file));
+		assertEquals(files, contents.getTransferData(
+			DataFlavor.javaFileListFlavor));
+
+		clipboard.lostOwnership(null, contents);
+		assertFalse(file.exists());
+		assertFalse(file.getParentFile().exists());
+	}
+
+	@Test
+	public void testToPlane() throws Exception {
+		final AWTClipboard clipboard = clipboard();
+		final int[] pixels = new int[12];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 0x80000000 | 0x10101 * i;
+		}
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(4, 3, pixels));
+		final Transferable contents = clipboard.getContents();
+		final ARGBPlane plane = AWTClipboard.toPlane(contents);
+		assertArrayEquals(pixels, plane.getData());
+		assertNotSame(pixels, plane.getData());
+
+		// Only PNG data is offered.
+		final Transferable png = new Transferable() {
+
+			@Override
+			public DataFlavor[] getTransferDataFlavors() {
+				return new DataFlavor[] { AWTClipboard.PNG_FLAVOR };
+			}
+
+			@Override
+			public boolean isDataFlavorSupported(final DataFlavor flavor) {
+				return AWTClipboard.PNG_FLAVOR.equals(flavor);
+			}
+
+			@Override
+			public Object getTransferData(final DataFlavor flavor)
+				throws UnsupportedFlavorException, IOException
+			{
+				return contents.getTransferData(flavor);
+			}
+		};
+		assertArrayEquals(pixels, AWTClipboard.toPlane(png).getData());
+
+		assertNull(AWTClipboard.toPlane(new StringSelection("pixels")));
+	}
+
+	@Test
+	public void testSpill() throws Exception {
+		final AWTClipboard clipboard = clipboard();
+		clipboard.setSpillThreshold(0);
+		final int[] pixels = new int[12];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 0xff000000 | i;
+		}
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(4, 3, pixels));
+
+		// NB: The image is only available once the pixels have been spilled.
+		final BufferedImage image = (BufferedImage) clipboard.getTransferData(
+			DataFlavor.imageFlavor);
+		assertPixels(pixels, image);
+		assertEquals(0, clipboard.getMemoryUsage());
+		assertEquals(48, clipboard.getOffHeapUsage());
+
+		clipboard.lostOwnership(null, clipboard.getContents());
+		assertEquals(0, clipboard.getOffHeapUsage());
+	}
+
+	@Test
+	public void testSpilledPng() throws Exception {
+		final AWTClipboard clipboard = clipboard();
+		clipboard.setSpillThreshold(0);
+		final int[] pixels = new int[12];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 0x80000000 | 0x10101 * i;
+		}
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(4, 3, pixels));
+		final Transferable contents = clipboard.getContents();
+
+		final byte[] png;
+		try (final InputStream in = (InputStream) contents.getTransferData(
+			AWTClipboard.PNG_FLAVOR))
+		{
+			png = readAll(in);
+		}
+		assertPixels(pixels, ImageIO.read(new ByteArrayInputStream(png)));
+		// NB: The PNG data is encoded from the file, not from a heap image.
+		assertEquals(png.length, clipboard.getMemoryUsage());
+		assertEquals(48, clipboard.getOffHeapUsage());
+
+		clipboard.lostOwnership(null, contents);
+		assertEquals(0, clipboard.getOffHeapUsage());
+		try {
+			contents.getTransferData(AWTClipboard.PNG_FLAVOR);
+			fail("Expected the pixels to be released");
+		}
+		catch (final IOException exc) {
+			// NB: Expected.
+		}
+	}
+
+	@Test
+	public void testLostOwnership() throws Exception {
+		final AWTClipboard clipboard = clipboard();
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(4, 3));
+		final Transferable first = clipboard.getContents();
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(2, 2));
+
+		// Losing ownership of replaced contents keeps the current contents.
+		clipboard.lostOwnership(null, first);
+		assertEquals(16, clipboard.getMemoryUsage());
+
+		final Transferable second = clipboard.getContents();
+		clipboard.lostOwnership(null, second);
+		assertNull(clipboard.getContents());
+		assertEquals(0, clipboard.getMemoryUsage());
+		try {
+			second.getTransferData(DataFlavor.imageFlavor);
+			fail("Expected the pixels to be released");
+		}
+		catch (final IOException exc) {
+			// NB: Expected.
+		}
+	}
+
+	@Test
+	public void testFailedCopy() throws Exception {
+		final Clipboard failing = new Clipboard("failing") {
+
+			private boolean fail;
+
+			@Override
+			public synchronized void setContents(final Transferable contents,
+				final ClipboardOwner owner)
+			{
+				if (fail) throw new IllegalStateException("Clipboard is busy");
+				fail = true;
+				super.setContents(contents, owner);
+			}
+		};
+		final AWTClipboard clipboard = new AWTClipboard(null, failing);
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(4, 3));
+		final Transferable first = clipboard.getContents();
+
+		// A failed copy keeps the previous contents, and releases the new ones.
+		clipboard.setSpillThreshold(0);
+		clipboard.pixelsToSystemClipboard(new ARGBPlane(2, 2));
+		assertSame(first, clipboard.getContents());
+		assertEquals(48, clipboard.getMemoryUsage());
+		assertEquals(0, clipboard.getOffHeapUsage());
+
+		// Losing ownership of the previous contents then releases them.
+		clipboard.lostOwnership(failing, first);
+		assertNull(clipboard.getContents());
+		assertEquals(0, clipboard.getMemoryUsage());
+	}
+
+	// -- Helper methods --
+
+	/** Creates a clipboard which works without a system clipboard. */
+	private static AWTClipboard clipboard() {
+		return new AWTClipboard(null, new Clipboard("test"));
+	}
+
+	/** Gets the size of the PNG data of the given contents. */
+	private static int pngBytes(final Transferable contents) throws Exception {
+		try (final InputStream in = (InputStream) contents.getTransferData(
+			AWTClipboard.PNG_FLAVOR))
+		{
+			return readAll(in).length;
+		}
+	}
+
+	private static byte[] readAll(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buf = new byte[4096];
+		for (int n; (n = in.read(buf)) >= 0;) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static void assertPixels(final int[] pixels,
+		final BufferedImage image)
+	{
+		assertEquals(4, image.getWidth());
+		assertEquals(3, image.getHeight());
+		for (int y = 0; y < 3; y++) {
+			for (int x = 0; x < 4; x++) {
+				assertEquals(pixels[4 * y + x], image.getRGB(x, y));
+			}
+		}
+	}
+
+}
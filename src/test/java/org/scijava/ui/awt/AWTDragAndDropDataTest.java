@@ -0,0 +1,314 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.log.LogService;
+import org.scijava.ui.dnd.MIMEType;
+
+/**
+ * Tests {@link AWTDragAndDropData}.
+ */
+public class AWTDragAndDropDataTest {
+
+	private Context context;
+
+	@Before
+	public void setUp() {
+		context = new Context(LogService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testFlavorsParsedOnce() throws Exception {
+		final CountingTransferable t = new CountingTransferable("hello");
+		final AWTDragAndDropData data = new AWTDragAndDropData(context, t);
+		final MIMEType text = new MIMEType(DataFlavor.stringFlavor.getMimeType());
+		final MIMEType image = new MIMEType("image/png");
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(data.isSupported(text));
+			assertFalse(data.isSupported(image));
+			assertEquals(2, data.getMIMETypes().size());
+		}
+		assertEquals("hello", data.getData(text));
+		assertEquals(1, t.flavorQueries);
+	}
+
+	@Test
+	public void testGetDataAsync() throws Exception {
+		final CountingTransferable t = new CountingTransferable("hello");
+		final AWTDragAndDropData data = new AWTDragAndDropData(context, t);
+		final MIMEType text = new MIMEType(DataFlavor.stringFlavor.getMimeType());
+
+		// NB: Later calls share the transfer of the first one.
+		final CompletableFuture<Object> transfer = data.getDataAsync(text);
+		final CompletableFuture<Object> again = data.getDataAsync(text);
+		assertEquals("hello", transfer.get(10, TimeUnit.SECONDS));
+		assertEquals("hello", again.get(10, TimeUnit.SECONDS));
+		assertEquals("hello", data.getData(text));
+		assertEquals(1, t.dataRequests);
+	}
+
+	@Test
+	public void testSizeLimit() throws Exception {
+		final AWTDragAndDropData data =
+			new AWTDragAndDropData(context, new StringSelection("hello"));
+		data.setSizeLimit(8);
+		final MIMEType text = new MIMEType(DataFlavor.stringFlavor.getMimeType());
+
+		try {
+			data.getDataAsync(text).get(10, TimeUnit.SECONDS);
+			fail("Expected the size limit to be exceeded");
+		}
+		catch (final ExecutionException exc) {
+			assertTrue(exc.getCause() instanceof IOException);
+		}
+	}
+
+	@Test
+	public void testTransferredOnce() throws Exception {
+		final CountingTransferable t = new CountingTransferable("hello");
+		final AWTDragAndDropData data = new AWTDragAndDropData(context, t);
+		final MIMEType text = new MIMEType(DataFlavor.stringFlavor.getMimeType());
+
+		// NB: Data of other applications is transferred on the calling thread.
+		final CompletableFuture<Object> transfer = data.getDataAsync(text);
+		assertTrue(transfer.isDone());
+		assertEquals("hello", data.getData(text));
+		assertEquals("hello", data.getData(text));
+		assertEquals(1, t.dataRequests);
+	}
+
+	@Test
+	public void testSizeLimitBeforeMaterializing() throws Exception {
+		final StreamingTransferable t = new StreamingTransferable();
+		final AWTDragAndDropData data = new AWTDragAndDropData(context, t);
+		final MIMEType text = new MIMEType(STRING_TEXT.getMimeType());
+
+		// The text is read through the reader flavor, not as a whole string.
+		assertEquals(StreamingTransferable.TEXT, data.getData(text));
+		assertEquals(0, t.stringRequests);
+
+		final AWTDragAndDropData limited = new AWTDragAndDropData(context, t);
+		limited.setSizeLimit(8);
+		try {
+			limited.getDataAsync(text).get(10, TimeUnit.SECONDS);
+			fail("Expected the size limit to be exceeded");
+		}
+		catch (final ExecutionException exc) {
+			assertTrue(exc.getCause() instanceof IOException);
+		}
+		assertEquals(0, t.stringRequests);
+	}
+
+	@Test
+	public void testStreamsReopened() throws Exception {
+		final byte[] bytes = { 1, 2, 3, 4, 5 };
+		final DataFlavor flavor =
+			new DataFlavor("application/octet-stream; class=java.io.InputStream");
+		final AWTDragAndDropData data = new AWTDragAndDropData(context,
+			new StreamTransferable(flavor, () -> new ByteArrayInputStream(bytes)));
+		final MIMEType mimeType = new MIMEType(flavor.getMimeType());
+
+		// Each call gets the full content, even after an earlier one was read.
+		assertArrayEquals(bytes, readAll((InputStream) data.getData(mimeType)));
+		assertArrayEquals(bytes, readAll((InputStream) data.getData(mimeType)));
+		assertArrayEquals(bytes, readAll((InputStream) data.getDataAsync(mimeType)
+			.get(10, TimeUnit.SECONDS)));
+
+		final DataFlavor readerFlavor =
+			new DataFlavor("text/x-test; class=java.io.Reader");
+		final AWTDragAndDropData text = new AWTDragAndDropData(context,
+			new StreamTransferable(readerFlavor, () -> new StringReader("text")));
+		final MIMEType textType = new MIMEType(readerFlavor.getMimeType());
+		final Reader reader = (Reader) text.getData(textType);
+		assertEquals('t', reader.read());
+		assertEquals("text", readAll((Reader) text.getData(textType)));
+	}
+
+	// -- Helper methods --
+
+	private static byte[] readAll(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int b; (b = in.read()) >= 0;) {
+			out.write(b);
+		}
+		return out.toByteArray();
+	}
+
+	private static String readAll(final Reader in) throws IOException {
+		final StringBuilder out = new StringBuilder();
+		for (int c; (c = in.read()) >= 0;) {
+			out.append((char) c);
+		}
+		return out.toString();
+	}
+
+	// -- Helper classes --
+
+	/** Transferable offering a single flavor, as a new stream each time. */
+	private static class StreamTransferable implements Transferable {
+
+		private final DataFlavor flavor;
+		private final Supplier<Object> stream;
+
+		private StreamTransferable(final DataFlavor flavor,
+			final Supplier<Object> stream)
+		{
+			this.flavor = flavor;
+			this.stream = stream;
+		}
+
+		@Override
+		public DataFlavor[] getTransferDataFlavors() {
+			return new DataFlavor[] { flavor };
+		}
+
+		@Override
+		public boolean isDataFlavorSupported(final DataFlavor f) {
+			return flavor.equals(f);
+		}
+
+		@Override
+		public Object getTransferData(final DataFlavor f)
+			throws UnsupportedFlavorException
+		{
+			if (!flavor.equals(f)) throw new UnsupportedFlavorException(f);
+			return stream.get();
+		}
+	}
+
+	private static class CountingTransferable implements Transferable {
+
+		private final StringSelection selection;
+		private int flavorQueries;
+		private int dataRequests;
+
+		private CountingTransferable(final String s) {
+			selection = new StringSelection(s);
+		}
+
+		@Override
+		public DataFlavor[] getTransferDataFlavors() {
+			flavorQueries++;
+			return selection.getTransferDataFlavors();
+		}
+
+		@Override
+		public boolean isDataFlavorSupported(final DataFlavor flavor) {
+			return selection.isDataFlavorSupported(flavor);
+		}
+
+		@Override
+		public Object getTransferData(final DataFlavor flavor)
+			throws UnsupportedFlavorException, IOException
+		{
+			dataRequests++;
+			return selection.getTransferData(flavor);
+		}
+	}
+
+	private static final DataFlavor STRING_TEXT = flavor(
+		"text/plain; class=java.lang.String");
+
+	private static final DataFlavor READER_TEXT = flavor(
+		"text/plain; class=java.io.Reader");
+
+	private static DataFlavor flavor(final String mimeType) {
+		try {
+			return new DataFlavor(mimeType);
+		}
+		catch (final ClassNotFoundException exc) {
+			throw new IllegalStateException(exc);
+		}
+	}
+
+	/** Offers text both as a string and through a reader. */
+	private static class StreamingTransferable implements Transferable {
+
+		private static final String TEXT = "streamed text";
+
+		private int stringRequests;
+
+		@Override
+		public DataFlavor[] getTransferDataFlavors() {
+			return new DataFlavor[] { STRING_TEXT, READER_TEXT };
+		}
+
+		@Override
+		public boolean isDataFlavorSupported(final DataFlavor flavor) {
+			return STRING_TEXT.equals(flavor) || READER_TEXT.equals(flavor);
+		}
+
+		@Override
+		public Object getTransferData(final DataFlavor flavor)
+			throws UnsupportedFlavorException
+		{
+			if (READER_TEXT.equals(flavor)) return new StringReader(TEXT);
+			if (STRING_TEXT.equals(flavor)) {
+				stringRequests++;
+				return TEXT;
+			}
+			throw new UnsupportedFlavorException(flavor);
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.scijava.ui.awt.AWTDropTargetEventDispatcher.DragSession;
+
+/**
+ * Tests {@link AWTDropTargetEventDispatcher}.
+ */
+public class AWTDropTargetEventDispatcherTest {
+
+	private static final long START = 1000000000L;
+
+	@Test
+	public void testDragOverThreshold() {
+		final AWTDropTargetEventDispatcher dispatcher =
+			new AWTDropTargetEventDispatcher(null, null);
+		dispatcher.setDragOverThreshold(5);
+		dispatcher.setDragOverInterval(0);
+		final DragSession session = new DragSession(null);
+		session.published(new Point(10, 10), START);
+
+		// NB: Without an interval, every event is published.
+		assertTrue(dispatcher.publishDragOver(session, new Point(10, 10), START));
+
+		dispatcher.setDragOverInterval(1000);
+		assertFalse(dispatcher.publishDragOver(session, new Point(10, 10), START));
+		assertFalse(dispatcher.publishDragOver(session, new Point(13, 14), START));
+		assertFalse(dispatcher.publishDragOver(session, new Point(15, 10), START));
+		assertTrue(dispatcher.publishDragOver(session, new Point(16, 10), START));
+		assertTrue(dispatcher.publishDragOver(session, new Point(14, 14), START));
+		assertTrue(dispatcher.publishDragOver(session, new Point(10, 4), START));
+
+		// The distance is measured from the last published location.
+		session.published(new Point(16, 10), START);
+		assertFalse(dispatcher.publishDragOver(session, new Point(20, 10), START));
+		assertTrue(dispatcher.publishDragOver(session, new Point(10, 10), START));
+	}
+
+	@Test
+	public void testDragOverInterval() {
+		final AWTDropTargetEventDispatcher dispatcher =
+			new AWTDropTargetEventDispatcher(null, null);
+		dispatcher.setDragOverThreshold(5);
+		dispatcher.setDragOverInterval(100);
+		final DragSession session = new DragSession(null);
+		final Point p = new Point(10, 10);
+		session.published(p, START);
+
+		final long ms = TimeUnit.MILLISECONDS.toNanos(1);
+		assertFalse(dispatcher.publishDragOver(session, p, START + 99 * ms));
+		assertTrue(dispatcher.publishDragOver(session, p, START + 100 * ms));
+
+		// The interval restarts with each published event.
+		session.published(p, START + 100 * ms);
+		assertFalse(dispatcher.publishDragOver(session, p, START + 150 * ms));
+		assertTrue(dispatcher.publishDragOver(session, p, START + 250 * ms));
+	}
+
+}
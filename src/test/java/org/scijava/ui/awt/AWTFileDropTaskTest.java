@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.app.StatusService;
+import org.scijava.app.event.StatusEvent;
+import org.scijava.event.EventHandler;
+import org.scijava.event.EventService;
+import org.scijava.log.LogService;
+import org.scijava.task.Task;
+import org.scijava.task.TaskService;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests {@link AWTFileDropTask}.
+ */
+public class AWTFileDropTaskTest {
+
+	private Context context;
+	private ExecutorService executor;
+	private final List<StatusEvent> statusEvents = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		context = new Context(EventService.class, StatusService.class);
+		context.service(EventService.class).subscribe(this);
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+		context.dispose();
+	}
+
+	@Test
+	public void testChunks() throws Exception {
+		final AWTFileDropTask task =
+			new AWTFileDropTask(context, null, files(100), 8, 3).start(executor);
+		task.getCompletion().get(10, TimeUnit.SECONDS);
+
+		assertTrue(task.isDone());
+		assertEquals(100, task.getProcessedCount());
+		// NB: Without a drag-and-drop service, no files can be handled.
+		assertEquals(100, task.getFailedCount());
+		// NB: Status events are published asynchronously.
+		awaitStatusEvents(14);
+		synchronized (statusEvents) {
+			// One progress report per chunk, and a final status message. As the
+			// chunks are handled concurrently, the order of the reports varies.
+			assertEquals(14, statusEvents.size());
+			assertTrue(statusEvents.stream().anyMatch(evt -> evt.getStatusMessage()
+				.equals("Dropped 100 files (100 failed)")));
+		}
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final AWTFileDropTask task =
+			new AWTFileDropTask(context, null, files(100), 8, 3);
+		task.cancel();
+		task.start(executor).getCompletion().get(10, TimeUnit.SECONDS);
+
+		assertEquals(0, task.getProcessedCount());
+		awaitStatusEvents(1);
+		synchronized (statusEvents) {
+			assertEquals(1, statusEvents.size());
+			assertTrue(statusEvents.get(0).getStatusMessage().startsWith(
+				"Drop canceled"));
+		}
+	}
+
+	@Test
+	public void testWithoutThreadService() throws Exception {
+		final Context c = new Context(LogService.class);
+		try {
+			assertNull(c.getService(ThreadService.class));
+			final AWTFileDropTask task =
+				new AWTFileDropTask(c, null, files(20), 4, 2).start();
+			task.getCompletion().get(10, TimeUnit.SECONDS);
+			assertEquals(20, task.getProcessedCount());
+		}
+		finally {
+			c.dispose();
+		}
+	}
+
+	@Test
+	public void testCancelTask() throws Exception {
+		final Context c = new Context(TaskService.class, StatusService.class);
+		try {
+			final CountDownLatch release = new CountDownLatch(1);
+			final ExecutorService single = Executors.newSingleThreadExecutor();
+			// NB: Hold the worker until the task has been canceled.
+			single.execute(() -> {
+				try {
+					release.await();
+				}
+				catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			final AWTFileDropTask task =
+				new AWTFileDropTask(c, null, files(100), 8, 1).start(single);
+			final Task t = task.getTask();
+			assertNotNull(t);
+			assertEquals(100, t.getProgressMaximum());
+
+			// Canceling the task, as a task monitor would, cancels the drop.
+			t.cancel("User canceled");
+			assertTrue(task.isCancelled());
+			release.countDown();
+			task.getCompletion().get(10, TimeUnit.SECONDS);
+			assertEquals(0, task.getProcessedCount());
+			single.shutdown();
+		}
+		finally {
+			c.dispose();
+		}
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	public void onEvent(final StatusEvent evt) {
+		synchronized (statusEvents) {
+			statusEvents.add(evt);
+		}
+	}
+
+	// -- Helper methods --
+
+	private void awaitStatusEvents(final int count) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < deadline) {
+			synchronized (statusEvents) {
+				if (statusEvents.size() >= count) return;
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	private static List<File> files(final int count) {
+		final List<File> files = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			files.add(new File("file" + i + ".dat"));
+		}
+		return files;
+	}
+
+}
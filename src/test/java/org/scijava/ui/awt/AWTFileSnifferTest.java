@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests {@link AWTFileSniffer}.
+ */
+public class AWTFileSnifferTest {
+
+	private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G' };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testClassify() throws Exception {
+		final AWTFileSniffer sniffer = sniffer();
+		final List<File> files = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			files.add(file("image" + i + ".png", PNG[0], 'P', 'N', 'G', 0, 0));
+		}
+		files.add(file("archive.tar", new byte[300]));
+		write(files.get(20), 257, "ustar".getBytes("US-ASCII"));
+		files.add(file("text.txt", 'h', 'i'));
+		files.add(file("empty.dat"));
+
+		final Map<File, String> names = sniffer.classify(files);
+		assertEquals(files.size(), names.size());
+		for (int i = 0; i < 20; i++) {
+			assertEquals("image/png", names.get(files.get(i)));
+		}
+		assertEquals("application/x-tar", names.get(files.get(20)));
+		assertNull(names.get(files.get(21)));
+		assertNull(names.get(files.get(22)));
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		final AWTFileSniffer sniffer = sniffer();
+		final File file = file("image.png", PNG[0], 'P', 'N', 'G');
+		assertEquals("image/png", sniffer.classify(file));
+		assertEquals(1, sniffer.getCacheSize());
+
+		// A modified file is classified again.
+		Files.write(file.toPath(), new byte[] { 'h', 'i', '!' });
+		assertNull(sniffer.classify(file));
+		assertEquals(2, sniffer.getCacheSize());
+	}
+
+	@Test
+	public void testCacheEviction() throws Exception {
+		final AtomicInteger tasks = new AtomicInteger();
+		final AWTFileSniffer sniffer = new AWTFileSniffer(
+			AWTFileSniffer.DEFAULT_PREFIX_SIZE, 2, r -> {
+				tasks.incrementAndGet();
+				r.run();
+			});
+		sniffer.register("image/png", 0, PNG);
+		final List<File> files = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			files.add(file("image" + i + ".png", PNG[0], 'P', 'N', 'G'));
+		}
+		final Map<File, String> names = sniffer.classify(files);
+		assertEquals(5, names.size());
+		for (final File file : files) {
+			assertEquals("image/png", names.get(file));
+		}
+		assertEquals(5, tasks.get());
+		assertEquals(2, sniffer.getCacheSize());
+
+		// The least recently used classification is evicted first.
+		final File file = files.get(3);
+		sniffer.classify(file);
+		sniffer.classify(files.get(0));
+		Files.write(file.toPath(), new byte[] { 'h', 'i' });
+		assertNull(sniffer.classify(file));
+		assertEquals(2, sniffer.getCacheSize());
+	}
+
+	@Test
+	public void testFileTypesOfLocalTransfer() throws Exception {
+		final File png = file("image.png", PNG[0], 'P', 'N', 'G');
+		final File text = file("text.txt", 'h', 'i');
+		final List<File> files = Arrays.asList(png, text);
+		final Context context = new Context(ThreadService.class);
+		try {
+			final AWTDragAndDropData data = new AWTDragAndDropData(context,
+				new FileListTransferable(files));
+			assertTrue(data.getFileTypes().isEmpty());
+			data.setFileSniffer(sniffer());
+			final Map<File, String> names = data.getFileTypes();
+			assertEquals(2, names.size());
+			assertEquals("image/png", names.get(png));
+			assertNull(names.get(text));
+		}
+		finally {
+			context.dispose();
+		}
+	}
+
+	// -- Helper methods --
+
+	private static AWTFileSniffer sniffer() {
+		final AWTFileSniffer sniffer = new AWTFileSniffer();
+		sniffer.register("image/png", 0, PNG);
+		sniffer.register("application/x-tar", 257, new byte[] { 'u', 's', 't',
+			'a', 'r' });
+		return sniffer;
+	}
+
+	private File file(final String name, final int... bytes) throws Exception {
+		final byte[] data = new byte[bytes.length];
+		for (int i = 0; i < bytes.length; i++) {
+			data[i] = (byte) bytes[i];
+		}
+		return file(name, data);
+	}
+
+	private File file(final String name, final byte[] data) throws Exception {
+		final File file = folder.newFile(name);
+		Files.write(file.toPath(), data);
+		return file;
+	}
+
+	private static void write(final File file, final int offset,
+		final byte[] bytes) throws Exception
+	{
+		final byte[] data = Files.readAllBytes(file.toPath());
+		System.arraycopy(bytes, 0, data, offset, bytes.length);
+		Files.write(file.toPath(), data);
+	}
+
+	// -- Helper classes --
+
+	/** Transferable of a file list, as offered by file managers. */
+	private static class FileListTransferable implements Transferable {
+
+		private final List<File> files;
+
+		private FileListTransferable(final List<File> files) {
+			this.files = files;
+		}
+
+		@Override
+		public DataFlavor[] getTransferDataFlavors() {
+			return new DataFlavor[] { DataFlavor.javaFileListFlavor };
+		}
+
+		@Override
+		public boolean isDataFlavorSupported(final DataFlavor flavor) {
+			return DataFlavor.javaFileListFlavor.equals(flavor);
+		}
+
+		@Override
+		public Object getTransferData(final DataFlavor flavor)
+			throws UnsupportedFlavorException
+		{
+			if (!isDataFlavorSupported(flavor)) {
+				throw new UnsupportedFlavorException(flavor);
+			}
+			return files;
+		}
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.scijava.ui.ARGBPlane;
+
+/**
+ * Tests {@link AWTImageTools}.
+ */
+public class AWTImageToolsTest {
+
+	@Test
+	public void testWrap() {
+		final ARGBPlane plane = plane(7, 5);
+		final BufferedImage image = AWTImageTools.wrap(plane);
+		assertEquals(BufferedImage.TYPE_INT_ARGB, image.getType());
+		assertPixels(plane, image);
+
+		// The image shares the pixels of the plane.
+		plane.getData()[0] = 0x12345678;
+		assertEquals(0x12345678, image.getRGB(0, 0));
+
+		// Subclasses cannot be wrapped.
+		assertNull(AWTImageTools.wrap(new ARGBPlane(1, 1) {}));
+	}
+
+	@Test
+	public void testToImage() {
+		final ARGBPlane plane = plane(7, 5);
+		assertPixels(plane, AWTImageTools.toImage(plane));
+	}
+
+	@Test
+	public void testToImageParallel() {
+		// NB: Large enough to be copied in parallel bands.
+		final ARGBPlane plane = plane(1500, 1000);
+		assertPixels(plane, AWTImageTools.toImage(plane));
+		final ARGBPlane derived = new ARGBPlane(1500, 1000, plane.getData()) {
+
+			@Override
+			public int getARGB(final int x, final int y) {
+				return ~super.getARGB(x, y);
+			}
+		};
+		assertPixels(derived, AWTImageTools.toImage(derived));
+	}
+
+	@Test
+	public void testToPlane() {
+		final ARGBPlane plane = plane(7, 5);
+		assertPlane(plane, AWTImageTools.toPlane(AWTImageTools.toImage(plane)));
+
+		// NB: Opaque images get full alpha.
+		final BufferedImage rgb = new BufferedImage(7, 5,
+			BufferedImage.TYPE_INT_RGB);
+		rgb.setRGB(0, 0, 7, 5, plane.getData(), 0, 7);
+		assertPlane(plane, AWTImageTools.toPlane(rgb));
+
+		final BufferedImage bgr = new BufferedImage(7, 5,
+			BufferedImage.TYPE_3BYTE_BGR);
+		bgr.setRGB(0, 0, 7, 5, plane.getData(), 0, 7);
+		assertPlane(plane, AWTImageTools.toPlane(bgr));
+	}
+
+	@Test
+	public void testToPlaneInterleavedBytes() throws Exception {
+		final int[] data = new int[35];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (i * 7) << 24 | 0x10203 * i;
+		}
+		final ARGBPlane plane = new ARGBPlane(7, 5, data);
+		final BufferedImage abgr = new BufferedImage(7, 5,
+			BufferedImage.TYPE_4BYTE_ABGR);
+		abgr.setRGB(0, 0, 7, 5, data, 0, 7);
+		assertPlane(plane, AWTImageTools.toPlane(abgr));
+
+		// NB: ImageIO reads PNG files into images like these.
+		final ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(abgr, "png", png);
+		final BufferedImage read = ImageIO.read(new ByteArrayInputStream(png
+			.toByteArray()));
+		assertEquals(BufferedImage.TYPE_4BYTE_ABGR, read.getType());
+		assertPlane(plane, AWTImageTools.toPlane(read));
+
+		final BufferedImage bgr = new BufferedImage(7, 5,
+			BufferedImage.TYPE_3BYTE_BGR);
+		bgr.setRGB(0, 0, 7, 5, data, 0, 7);
+		final ARGBPlane opaque = AWTImageTools.toPlane(bgr);
+		for (int i = 0; i < data.length; i++) {
+			assertEquals(0xff000000 | data[i], opaque.getData()[i]);
+		}
+
+		// Subimages are converted by their color model instead.
+		final ARGBPlane sub = AWTImageTools.toPlane(abgr.getSubimage(1, 2, 3, 2));
+		for (int y = 0; y < 2; y++) {
+			for (int x = 0; x < 3; x++) {
+				assertEquals(plane.getARGB(x + 1, y + 2), sub.getARGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testToPlaneSubimage() {
+		final ARGBPlane plane = plane(7, 5);
+		final BufferedImage sub = AWTImageTools.toImage(plane).getSubimage(2, 1,
+			4, 3);
+		final ARGBPlane result = AWTImageTools.toPlane(sub);
+		assertEquals(4, result.getWidth());
+		assertEquals(3, result.getHeight());
+		for (int y = 0; y < 3; y++) {
+			for (int x = 0; x < 4; x++) {
+				assertEquals(plane.getARGB(x + 2, y + 1), result.getARGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testToPlaneParallel() {
+		// NB: Large enough to be converted in parallel bands.
+		final ARGBPlane plane = plane(1500, 1000);
+		final ARGBPlane result =
+			AWTImageTools.toPlane(AWTImageTools.toImage(plane));
+		assertArrayEquals(plane.getData(), result.getData());
+
+		final BufferedImage bgr = new BufferedImage(1500, 1000,
+			BufferedImage.TYPE_3BYTE_BGR);
+		bgr.setRGB(0, 0, 1500, 1000, plane.getData(), 0, 1500);
+		assertArrayEquals(plane.getData(), AWTImageTools.toPlane(bgr)
+			.getData());
+	}
+
+	// -- Helper methods --
+
+	private static ARGBPlane plane(final int width, final int height) {
+		final int[] data = new int[width * height];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = 0xff000000 | i * 31;
+		}
+		return new ARGBPlane(width, height, data);
+	}
+
+	private static void assertPixels(final ARGBPlane plane,
+		final BufferedImage image)
+	{
+		assertEquals(plane.getWidth(), image.getWidth());
+		assertEquals(plane.getHeight(), image.getHeight());
+		for (int y = 0; y < plane.getHeight(); y++) {
+			for (int x = 0; x < plane.getWidth(); x++) {
+				assertEquals(plane.getARGB(x, y), image.getRGB(x, y));
+			}
+		}
+	}
+
+	private static void assertPlane(final ARGBPlane expected,
+		final ARGBPlane actual)
+	{
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		assertArrayEquals(expected.getData(), actual.getData());
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link AWTImageTransferable}.
+ */
+public class AWTImageTransferableTest {
+
+	@Test
+	public void testLazyRendering() throws Exception {
+		final AtomicInteger renders = new AtomicInteger();
+		final AWTImageTransferable t = new AWTImageTransferable("my image", () -> {
+			renders.incrementAndGet();
+			final BufferedImage image =
+				new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+			image.setRGB(1, 1, 0xff00ff00);
+			return image;
+		});
+		assertEquals(3, t.getTransferDataFlavors().length);
+		assertEquals("my image", t.getTransferData(DataFlavor.stringFlavor));
+		assertFalse(t.isRendered());
+		assertEquals(0, renders.get());
+
+		final Object image = t.getTransferData(DataFlavor.imageFlavor);
+		assertSame(image, t.getTransferData(DataFlavor.imageFlavor));
+		@SuppressWarnings("unchecked")
+		final List<File> files =
+			(List<File>) t.getTransferData(DataFlavor.javaFileListFlavor);
+		assertEquals(1, renders.get());
+
+		assertEquals(1, files.size());
+		final File file = files.get(0);
+		assertEquals("my_image.png", file.getName());
+		final BufferedImage read = ImageIO.read(file);
+		assertEquals(3, read.getWidth());
+		assertEquals(0xff00ff00, read.getRGB(1, 1));
+		// NB: The file outlives the drag, since drop targets may still read it.
+		t.release();
+		assertTrue(file.exists());
+		assertEquals(file, t.getFile());
+		assertTrue(file.delete());
+		assertTrue(file.getParentFile().delete());
+	}
+
+	@Test
+	public void testReleaseBeforeWriting() throws Exception {
+		final AWTImageTransferable t = new AWTImageTransferable("image",
+			() -> new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+		t.release();
+		try {
+			t.getFile();
+			fail("Expected the image to be unavailable");
+		}
+		catch (final IOException exc) {
+			// NB: Expected.
+		}
+	}
+
+}
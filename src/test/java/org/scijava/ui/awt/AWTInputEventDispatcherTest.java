@@ -29,25 +29,42 @@
 
 package org.scijava.ui.awt;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.awt.EventQueue;
 import java.awt.Frame;
 import java.awt.Panel;
 import java.awt.event.*;
+import java.io.File;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.scijava.display.Display;
 import org.scijava.display.event.input.KyPressedEvent;
+import org.scijava.display.event.input.KyTypedEvent;
+import org.scijava.display.event.input.MsButtonEvent;
+import org.scijava.display.event.input.MsDraggedEvent;
+import org.scijava.display.event.input.MsMovedEvent;
+import org.scijava.display.event.input.MsPressedEvent;
+import org.scijava.display.event.input.MsWheelEvent;
 import org.scijava.event.EventService;
+import org.scijava.input.KeyCode;
+import org.scijava.ui.awt.event.InputActiveEvent;
+import org.scijava.ui.awt.event.InputIdleEvent;
+import org.scijava.ui.awt.event.MsPreciseWheelEvent;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * Tests {@link AWTInputEventDispatcher}.
@@ -56,6 +73,12 @@ import static org.junit.Assert.assertTrue;
  */
 public class AWTInputEventDispatcherTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Display of the dispatched events, kept here since dispatchers don't. */
+	private final Display<?> display = mock(Display.class);
+
 	@Test
 	public void testKeyPressedEvent() {
 		AWTInputEventDispatcher dispatcher = dispatcher();
@@ -73,8 +96,646 @@ public class AWTInputEventDispatcherTest {
 		assertEquals("control shift NUM0", sjEvent.getAccelerator().toString());
 	}
 
+	@Test
+	public void testCoalescedMotion() throws Exception {
+		EventQueue.invokeAndWait(() -> {
+			AWTInputEventDispatcher dispatcher = dispatcher();
+			dispatcher.setCoalescing(true);
+
+			// Dispatch a burst of AWT motion events.
+			Panel source = new Panel();
+			for (int i = 0; i < 10; i++) {
+				dispatcher.mouseMoved(mouseEvent(source, MouseEvent.MOUSE_MOVED, i, 2 * i));
+			}
+			assertTrue(calls.isEmpty());
+
+			// Verify that only the final position was published.
+			dispatcher.flush();
+			MsMovedEvent sjEvent = extractEvent(MsMovedEvent.class);
+			assertEquals(9, sjEvent.getX());
+			assertEquals(18, sjEvent.getY());
+			assertTrue(calls.isEmpty());
+		});
+	}
+
+	@Test
+	public void testCoalescedWheel() throws Exception {
+		EventQueue.invokeAndWait(() -> {
+			AWTInputEventDispatcher dispatcher = dispatcher();
+			dispatcher.setCoalescing(true);
+
+			// Dispatch a burst of AWT wheel events.
+			Panel source = new Panel();
+			for (int i = 0; i < 5; i++) {
+				dispatcher.mouseWheelMoved(new MouseWheelEvent(source,
+					MouseEvent.MOUSE_WHEEL, 0, 0, 3, 4, 0, false,
+					MouseWheelEvent.WHEEL_UNIT_SCROLL, 1, 2));
+			}
+
+			// Verify that the wheel rotation was summed.
+			dispatcher.flush();
+			MsWheelEvent sjEvent = extractEvent(MsWheelEvent.class);
+			assertEquals(10, sjEvent.getWheelRotation());
+		});
+	}
+
+	@Test
+	public void testCoalescedOrdering() throws Exception {
+		EventQueue.invokeAndWait(() -> {
+			AWTInputEventDispatcher dispatcher = dispatcher();
+			dispatcher.setCoalescing(true);
+
+			// Dispatch motion events followed by a button press.
+			Panel source = new Panel();
+			dispatcher.mouseMoved(mouseEvent(source, MouseEvent.MOUSE_MOVED, 1, 1));
+			dispatcher.mouseMoved(mouseEvent(source, MouseEvent.MOUSE_MOVED, 5, 7));
+			dispatcher.mousePressed(mouseEvent(source, MouseEvent.MOUSE_PRESSED, 5, 7));
+
+			// Verify that the pending motion was published before the press.
+			assertEquals(2, calls.size());
+			MsMovedEvent moved = extractEvent(MsMovedEvent.class);
+			assertEquals(5, moved.getX());
+			assertEquals(7, moved.getY());
+			extractEvent(MsPressedEvent.class);
+		});
+	}
+
+	@Test
+	public void testRoutedKeyEvent() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		AWTEventRouter router = AWTEventRouter.getInstance();
+		Panel routed = new Panel();
+		router.register(routed, dispatcher, true, false);
+		try {
+			// Events of the registered component reach the dispatcher.
+			router.eventDispatched(new KeyEvent(routed, KeyEvent.KEY_PRESSED, 0, 0,
+				KeyEvent.VK_A, 'a'));
+			extractEvent(KyPressedEvent.class);
+
+			// Events of other components, or of disabled types, do not.
+			router.eventDispatched(new KeyEvent(new Panel(), KeyEvent.KEY_PRESSED,
+				0, 0, KeyEvent.VK_A, 'a'));
+			router.eventDispatched(mouseEvent(routed, MouseEvent.MOUSE_MOVED, 1, 1));
+			assertTrue(calls.isEmpty());
+		}
+		finally {
+			router.unregister(routed);
+		}
+		assertEquals(0, router.getRouteCount());
+	}
+
+	@Test
+	public void testRecordAndReplay() throws Exception {
+		File log = folder.newFile("input.log");
+		Panel source = new Panel();
+		try (AWTInputEventRecorder recorder = new AWTInputEventRecorder(log, 3)) {
+			recorder.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, 100,
+				InputEvent.SHIFT_DOWN_MASK, KeyEvent.VK_A, 'A'));
+			recorder.mouseDragged(new MouseEvent(source, MouseEvent.MOUSE_DRAGGED,
+				105, InputEvent.BUTTON1_DOWN_MASK, 12, 34, 1, false,
+				MouseEvent.BUTTON1));
+			recorder.mouseWheelMoved(new MouseWheelEvent(source,
+				MouseEvent.MOUSE_WHEEL, 110, 0, 5, 6, 5, 6, 0, false,
+				MouseWheelEvent.WHEEL_UNIT_SCROLL, 3, -2, -2.5));
+			recorder.mouseMoved(mouseEvent(source, MouseEvent.MOUSE_MOVED, 0, 0));
+			assertEquals(3, recorder.getRecordCount());
+			assertEquals(1, recorder.getOverflowCount());
+		}
+
+		AWTInputEventReplayer replayer = new AWTInputEventReplayer(log);
+		assertEquals(3, replayer.getRecordCount());
+		assertEquals(110, replayer.getWhen(2));
+		replayer.replay(dispatcher(), source, false);
+
+		KyPressedEvent key = extractEvent(KyPressedEvent.class);
+		assertEquals("shift A", key.getAccelerator().toString());
+		MsDraggedEvent drag = extractEvent(MsDraggedEvent.class);
+		assertEquals(12, drag.getX());
+		assertEquals(34, drag.getY());
+		assertTrue(drag.getModifiers().isLeftButtonDown());
+		MsWheelEvent wheel = extractEvent(MsWheelEvent.class);
+		assertEquals(-2, wheel.getWheelRotation());
+		assertTrue(calls.isEmpty());
+	}
+
+	@Test
+	public void testRecorderCapacity() throws Exception {
+		File log = folder.newFile("oversized.log");
+		try {
+			new AWTInputEventRecorder(log, AWTInputEventRecorder.MAX_CAPACITY + 1);
+			fail("Expected an oversized capacity to be rejected");
+		}
+		catch (IllegalArgumentException exc) {
+			// NB: Expected.
+		}
+		assertEquals(0, log.length());
+	}
+
+	@Test
+	public void testLatencyStats() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		AWTInputLatencyStats stats = new AWTInputLatencyStats();
+		dispatcher.setLatencyStats(stats);
+
+		// Dispatch an AWT event which has been waiting for 50 ms.
+		long when = System.currentTimeMillis() - 50;
+		dispatcher.keyPressed(new KeyEvent(new Panel(), KeyEvent.KEY_PRESSED,
+			when, 0, KeyEvent.VK_A, 'a'));
+		extractEvent(KyPressedEvent.class);
+
+		assertEquals(1, stats.getEventClasses().size());
+		AWTLatencyHistogram queue = stats.getHistogram(KyPressedEvent.class,
+			AWTInputLatencyStats.Latency.QUEUE);
+		AWTLatencyHistogram total = stats.getHistogram(KyPressedEvent.class,
+			AWTInputLatencyStats.Latency.TOTAL);
+		assertEquals(1, queue.getCount());
+		assertTrue(queue.getMax() >= 50000000L);
+		assertTrue(total.getMax() >= queue.getMax());
+		assertEquals(queue.getMax(), queue.getPercentile(100));
+		assertNull(stats.getHistogram(MsMovedEvent.class,
+			AWTInputLatencyStats.Latency.QUEUE));
+	}
+
+	@Test
+	public void testPreciseWheel() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		dispatcher.setPreciseWheel(true);
+
+		// Dispatch eight quarter-notch AWT wheel events.
+		Panel source = new Panel();
+		for (int i = 0; i < 8; i++) {
+			dispatcher.mouseWheelMoved(preciseWheelEvent(source, 0.25));
+		}
+
+		// Verify that one event was published per whole notch.
+		assertEquals(2, calls.size());
+		assertEquals(1, extractEvent(MsWheelEvent.class).getWheelRotation());
+		assertEquals(1, extractEvent(MsWheelEvent.class).getWheelRotation());
+	}
+
+	@Test
+	public void testCoalescedPreciseWheel() throws Exception {
+		EventQueue.invokeAndWait(() -> {
+			AWTInputEventDispatcher dispatcher = dispatcher();
+			dispatcher.setPreciseWheel(true);
+			dispatcher.setCoalescing(true);
+
+			// Dispatch a burst of fractional AWT wheel events.
+			Panel source = new Panel();
+			for (int i = 0; i < 5; i++) {
+				dispatcher.mouseWheelMoved(preciseWheelEvent(source, 0.25));
+			}
+
+			// Verify that the accumulated amount was published at once.
+			dispatcher.flush();
+			MsPreciseWheelEvent wheel = extractEvent(MsPreciseWheelEvent.class);
+			assertEquals(1, wheel.getWheelRotation());
+			assertEquals(1.25, wheel.getPreciseWheelRotation(), 0);
+
+			// Verify that the fractional remainder carries over.
+			for (int i = 0; i < 3; i++) {
+				dispatcher.mouseWheelMoved(preciseWheelEvent(source, 0.25));
+			}
+			dispatcher.flush();
+			wheel = extractEvent(MsPreciseWheelEvent.class);
+			assertEquals(1, wheel.getWheelRotation());
+			assertEquals(0.75, wheel.getPreciseWheelRotation(), 0);
+		});
+	}
+
+	@Test
+	public void testPointerHistory() throws Exception {
+		EventQueue.invokeAndWait(() -> {
+			AWTInputEventDispatcher dispatcher = dispatcher();
+			AWTPointerHistory history = new AWTPointerHistory(4);
+			assertEquals(7, history.getCapacity());
+			dispatcher.setPointerHistory(history);
+			dispatcher.setCoalescing(true);
+
+			// Dispatch more AWT motion events than the history holds.
+			Panel source = new Panel();
+			for (int i = 0; i < 10; i++) {
+				dispatcher.mouseDragged(new MouseEvent(source,
+					MouseEvent.MOUSE_DRAGGED, 1000 + i, InputEvent.BUTTON1_DOWN_MASK, i,
+					-i, 1, false, MouseEvent.BUTTON1));
+			}
+			assertEquals(7, history.available());
+
+			// Verify that the most recent samples are drained in order.
+			int[] x = new int[16], y = new int[16], buttons = new int[16];
+			long[] when = new long[16];
+			assertEquals(7, history.drain(x, y, when, buttons));
+			assertEquals(3, history.getLostCount());
+			for (int i = 0; i < 7; i++) {
+				assertEquals(i + 3, x[i]);
+				assertEquals(-i - 3, y[i]);
+				assertEquals(1003 + i, when[i]);
+				assertEquals(AWTInputs.LEFT_BUTTON_MASK, buttons[i]);
+			}
+			assertEquals(0, history.drain(x, y, when, buttons));
+		});
+	}
+
+	@Test
+	public void testPointerState() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		assertEquals(AWTPointerState.NONE, dispatcher.getPointerState());
+
+		dispatcher.mouseDragged(new MouseEvent(new Panel(),
+			MouseEvent.MOUSE_DRAGGED, 0, InputEvent.BUTTON1_DOWN_MASK, 123, -45, 1,
+			false, MouseEvent.BUTTON1));
+		long state = dispatcher.getPointerState();
+		assertEquals(123, AWTPointerState.getX(state));
+		assertEquals(-45, AWTPointerState.getY(state));
+		assertEquals(AWTInputs.LEFT_BUTTON_MASK, AWTPointerState.getButtonMask(
+			state));
+		assertEquals(123, dispatcher.getLastX());
+		assertEquals(-45, dispatcher.getLastY());
+
+		dispatcher.mouseExited(mouseEvent(new Panel(), MouseEvent.MOUSE_EXITED, 0,
+			0));
+		assertEquals(-1, dispatcher.getLastX());
+		assertEquals(-1, dispatcher.getLastY());
+	}
+
+	@Test
+	public void testPressedKeys() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		Panel source = new Panel();
+		dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, 0, 0,
+			KeyEvent.VK_SHIFT, KeyEvent.CHAR_UNDEFINED));
+		dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, 0, 0,
+			KeyEvent.VK_A, 'A'));
+		assertTrue(dispatcher.isKeyDown(KeyCode.SHIFT));
+		assertTrue(dispatcher.isKeyDown(KeyCode.A));
+		assertFalse(dispatcher.isKeyDown(KeyCode.B));
+		assertEquals(2, dispatcher.getPressedKeys().size());
+
+		dispatcher.keyReleased(new KeyEvent(source, KeyEvent.KEY_RELEASED, 0, 0,
+			KeyEvent.VK_SHIFT, KeyEvent.CHAR_UNDEFINED));
+		assertFalse(dispatcher.isKeyDown(KeyCode.SHIFT));
+		assertTrue(dispatcher.getPressedKeys().contains(KeyCode.A));
+		dispatcher.clearPressedKeys();
+		assertTrue(dispatcher.getPressedKeys().isEmpty());
+	}
+
+	@Test
+	public void testInputSink() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		List<int[]> inputs = new ArrayList<>();
+		dispatcher.addInputSink((type, x, y, modifiers, code) -> {
+			inputs.add(new int[] { type, x, y, modifiers, code });
+			return type == MouseEvent.MOUSE_DRAGGED;
+		});
+
+		// Sinks consume events before they are published.
+		MouseEvent drag = new MouseEvent(new Panel(), MouseEvent.MOUSE_DRAGGED, 0,
+			InputEvent.BUTTON1_DOWN_MASK, 8, 9, 1, false, MouseEvent.BUTTON1);
+		dispatcher.mouseDragged(drag);
+		assertTrue(drag.isConsumed());
+		assertTrue(calls.isEmpty());
+		assertEquals(1, inputs.size());
+		int[] input = inputs.get(0);
+		assertEquals(MouseEvent.MOUSE_DRAGGED, input[0]);
+		assertEquals(8, input[1]);
+		assertEquals(9, input[2]);
+		assertEquals(InputEvent.BUTTON1_DOWN_MASK, input[3]);
+		assertEquals(MsButtonEvent.LEFT_BUTTON, input[4]);
+
+		// Events not consumed by any sink are published as usual.
+		dispatcher.mouseMoved(mouseEvent(new Panel(), MouseEvent.MOUSE_MOVED, 1,
+			2));
+		assertEquals(2, inputs.size());
+		extractEvent(MsMovedEvent.class);
+	}
+
+	@Test
+	public void testInputFlow() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		List<Runnable> tasks = new ArrayList<>();
+		List<Object> received = new ArrayList<>();
+		AWTInputEventFlow.Subscription[] subscription = { null };
+		dispatcher.getInputFlow().subscribe(
+			new AWTInputEventFlow.Subscriber<Object>() {
+
+				@Override
+				public void onSubscribe(AWTInputEventFlow.Subscription s) {
+					subscription[0] = s;
+				}
+
+				@Override
+				public void onNext(Object item) {
+					received.add(item);
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					received.add(throwable);
+				}
+
+				@Override
+				public void onComplete() {
+					received.add("complete");
+				}
+			}, tasks::add, 8);
+		tasks.remove(0).run();
+		assertNotNull(subscription[0]);
+
+		// Publish events while the subscriber has no demand.
+		Panel source = new Panel();
+		for (int i = 0; i < 5; i++) {
+			dispatcher.mouseMoved(mouseEvent(source, MouseEvent.MOUSE_MOVED, i, i));
+		}
+		dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, 0, 0,
+			KeyEvent.VK_A, 'a'));
+		for (int i = 5; i < 8; i++) {
+			dispatcher.mouseMoved(mouseEvent(source, MouseEvent.MOUSE_MOVED, i, i));
+		}
+		calls.clear();
+		assertTrue(tasks.isEmpty());
+
+		// Verify that motion was conflated around the lossless key event.
+		subscription[0].request(2);
+		tasks.remove(0).run();
+		assertEquals(2, received.size());
+		assertEquals(4, ((MsMovedEvent) received.get(0)).getX());
+		assertTrue(received.get(1) instanceof KyPressedEvent);
+
+		subscription[0].request(10);
+		tasks.remove(0).run();
+		assertEquals(3, received.size());
+		assertEquals(7, ((MsMovedEvent) received.get(2)).getX());
+
+		dispatcher.getInputFlow().close();
+		tasks.remove(0).run();
+		assertEquals("complete", received.get(3));
+		assertEquals(0, dispatcher.getInputFlow().getSubscriberCount());
+	}
+
+	@Test
+	public void testInputFlowFailingSubscriber() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		List<Runnable> tasks = new ArrayList<>();
+		List<Object> received = new ArrayList<>();
+		dispatcher.getInputFlow().subscribe(
+			new AWTInputEventFlow.Subscriber<Object>() {
+
+				@Override
+				public void onSubscribe(AWTInputEventFlow.Subscription s) {
+					s.request(10);
+				}
+
+				@Override
+				public void onNext(Object item) {
+					throw new IllegalStateException("broken subscriber");
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					received.add(throwable);
+				}
+
+				@Override
+				public void onComplete() {
+					received.add("complete");
+				}
+			}, tasks::add, 8);
+		tasks.remove(0).run();
+
+		Panel source = new Panel();
+		dispatcher.mouseMoved(mouseEvent(source, MouseEvent.MOUSE_MOVED, 1, 2));
+		tasks.remove(0).run();
+		assertEquals(1, received.size());
+		assertEquals("broken subscriber", ((Throwable) received.get(0))
+			.getMessage());
+		assertEquals(0, dispatcher.getInputFlow().getSubscriberCount());
+
+		// The cancelled subscriber receives nothing more.
+		dispatcher.mouseMoved(mouseEvent(source, MouseEvent.MOUSE_MOVED, 3, 4));
+		assertTrue(tasks.isEmpty());
+	}
+
+	@Test
+	public void testInputFlowClosedWithRegistration() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		List<Object> received = new ArrayList<>();
+		dispatcher.getInputFlow().subscribe(
+			new AWTInputEventFlow.Subscriber<Object>() {
+
+				@Override
+				public void onSubscribe(AWTInputEventFlow.Subscription s) {
+					// NB: No demand needed.
+				}
+
+				@Override
+				public void onNext(Object item) {
+					received.add(item);
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					received.add(throwable);
+				}
+
+				@Override
+				public void onComplete() {
+					received.add("complete");
+				}
+			}, Runnable::run, 8);
+		AWTRegistration first = dispatcher.attach(new Panel(), true, true);
+		AWTRegistration second = dispatcher.attach(new Panel(), true, true);
+
+		first.close();
+		assertTrue(received.isEmpty());
+		second.close();
+		assertEquals(Arrays.asList("complete"), received);
+	}
+
+	@Test
+	public void testKeyRepeatRateLimit() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		dispatcher.setKeyRepeatPolicy(
+			AWTInputEventDispatcher.KeyRepeatPolicy.RATE_LIMIT);
+		dispatcher.setKeyRepeatRate(10);
+
+		// Hold a key down, repeating every 30 ms.
+		Panel source = new Panel();
+		for (int when = 0; when <= 120; when += 30) {
+			dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, when,
+				0, KeyEvent.VK_A, 'a'));
+			dispatcher.keyTyped(new KeyEvent(source, KeyEvent.KEY_TYPED, when, 0,
+				KeyEvent.VK_UNDEFINED, 'a'));
+		}
+
+		// Verify that only the initial press and one repeat were published.
+		assertEquals(3, dispatcher.getDroppedKeyRepeatCount());
+		assertEquals(4, calls.size());
+		extractEvent(KyPressedEvent.class);
+		extractEvent(KyTypedEvent.class);
+		extractEvent(KyPressedEvent.class);
+		extractEvent(KyTypedEvent.class);
+	}
+
+	@Test
+	public void testKeyRepeatRateLimitExact() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		dispatcher.setKeyRepeatPolicy(
+			AWTInputEventDispatcher.KeyRepeatPolicy.RATE_LIMIT);
+		Panel source = new Panel();
+
+		// At 3 repeats per second, a repeat after 333 ms is still too early.
+		dispatcher.setKeyRepeatRate(3);
+		for (int when : new int[] { 0, 333, 334 }) {
+			dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, when,
+				0, KeyEvent.VK_A, 'a'));
+		}
+		assertEquals(1, dispatcher.getDroppedKeyRepeatCount());
+
+		// Rates above 1000 per second still drop simultaneous repeats.
+		dispatcher.setKeyRepeatRate(2000);
+		for (int when : new int[] { 1000, 1000, 1001 }) {
+			dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, when,
+				0, KeyEvent.VK_A, 'a'));
+		}
+		assertEquals(2, dispatcher.getDroppedKeyRepeatCount());
+		assertEquals(4, calls.size());
+	}
+
+	@Test
+	public void testKeyPressAfterFocusLoss() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		dispatcher.setKeyRepeatPolicy(
+			AWTInputEventDispatcher.KeyRepeatPolicy.RATE_LIMIT);
+		dispatcher.setKeyRepeatRate(10);
+		Panel source = new Panel();
+		dispatcher.register(source, true, false);
+		assertTrue(Arrays.asList(source.getFocusListeners()).contains(dispatcher));
+
+		dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, 0, 0,
+			KeyEvent.VK_A, 'a'));
+		extractEvent(KyPressedEvent.class);
+		assertTrue(dispatcher.isKeyDown(KeyEvent.VK_A));
+
+		// The key is released while another component has the focus.
+		for (FocusListener l : source.getFocusListeners()) {
+			l.focusLost(new FocusEvent(source, FocusEvent.FOCUS_LOST));
+		}
+		assertFalse(dispatcher.isKeyDown(KeyEvent.VK_A));
+
+		// Pressing the key again is no auto-repeat, so it is published.
+		dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, 30, 0,
+			KeyEvent.VK_A, 'a'));
+		extractEvent(KyPressedEvent.class);
+		assertEquals(0, dispatcher.getDroppedKeyRepeatCount());
+	}
+
+	@Test
+	public void testKeyRepeatDropWhileBusy() {
+		AWTInputEventDispatcher dispatcher = dispatcher();
+		dispatcher.setKeyRepeatPolicy(
+			AWTInputEventDispatcher.KeyRepeatPolicy.DROP_WHILE_BUSY);
+		Panel source = new Panel();
+		// NB: Event timestamps need not agree with the system clock.
+		long now = 1000;
+
+		dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, now, 0,
+			KeyEvent.VK_DOWN, KeyEvent.CHAR_UNDEFINED));
+		extractEvent(KyPressedEvent.class);
+
+		// A repeat generated while the previous press was published is dropped.
+		dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, now - 1,
+			0, KeyEvent.VK_DOWN, KeyEvent.CHAR_UNDEFINED));
+		assertTrue(calls.isEmpty());
+		assertEquals(1, dispatcher.getDroppedKeyRepeatCount());
+
+		// A repeat generated afterwards is published.
+		dispatcher.keyPressed(new KeyEvent(source, KeyEvent.KEY_PRESSED, now +
+			1000, 0, KeyEvent.VK_DOWN, KeyEvent.CHAR_UNDEFINED));
+		extractEvent(KyPressedEvent.class);
+	}
+
+	private MouseWheelEvent preciseWheelEvent(Panel source, double rotation) {
+		return new MouseWheelEvent(source, MouseEvent.MOUSE_WHEEL, 0, 0, 3, 4, 3,
+			4, 0, false, MouseWheelEvent.WHEEL_UNIT_SCROLL, 1, 0, rotation);
+	}
+
+	private MouseEvent mouseEvent(Panel source, int id, int x, int y) {
+		return new MouseEvent(source, id, 0, 0, x, y, 1, false,
+			MouseEvent.BUTTON1);
+	}
+
+	@Test
+	public void testIdleDetection() throws Exception {
+		AWTInputEventDispatcher dispatcher = new AWTInputEventDispatcher(display,
+			mock(EventService.class));
+		EventQueue.invokeAndWait(() -> dispatcher.setIdleTimeout(20));
+
+		// Wait for the idle timeout to elapse.
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (!dispatcher.isIdle() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(dispatcher.isIdle());
+		EventQueue.invokeAndWait(() -> {
+			InputIdleEvent idle = extractEvent(InputIdleEvent.class);
+			assertTrue(idle.getIdleTime() >= 20);
+			assertTrue(calls.isEmpty());
+
+			// The next input ends the idle period before being published itself.
+			dispatcher.keyPressed(new KeyEvent(new Panel(), KeyEvent.KEY_PRESSED, 0,
+				0, KeyEvent.VK_A, 'a'));
+			assertFalse(dispatcher.isIdle());
+			InputActiveEvent active = extractEvent(InputActiveEvent.class);
+			assertTrue(active.getIdleTime() >= 20);
+			extractEvent(KyPressedEvent.class);
+			assertTrue(dispatcher.getIdleTime() < 1000);
+			dispatcher.setIdleTimeout(0);
+		});
+	}
+
+	@Test
+	public void testIdleTimerStoppedOnClose() throws Exception {
+		AWTInputEventDispatcher dispatcher = new AWTInputEventDispatcher(display,
+			mock(EventService.class));
+		AWTRegistration registration = dispatcher.attach(new Panel(), true, true);
+		EventQueue.invokeAndWait(() -> dispatcher.setIdleTimeout(100));
+		registration.close();
+
+		// Once the last registration is closed, idleness is no longer reported.
+		Thread.sleep(300);
+		EventQueue.invokeAndWait(() -> {});
+		assertFalse(dispatcher.isIdle());
+	}
+
+	@Test
+	public void testDisplayGone() throws Exception {
+		AWTInputEventDispatcher dispatcher = new AWTInputEventDispatcher(
+			mock(Display.class), mock(EventService.class));
+		Panel panel = new Panel();
+		AWTRegistration registration = dispatcher.attach(panel, true, true);
+		calls.clear();
+
+		EventQueue.invokeAndWait(() -> {
+			dispatcher.setCoalescing(true);
+			dispatcher.mouseMoved(mouseEvent(panel, MouseEvent.MOUSE_MOVED, 1, 2));
+			for (int i = 0; i < 10 && dispatcher.getDisplay() != null; i++) {
+				System.gc();
+			}
+			assumeTrue(dispatcher.getDisplay() == null);
+
+			// Neither pending motion nor new input is published without a display.
+			dispatcher.flush();
+			dispatcher.keyPressed(new KeyEvent(panel, KeyEvent.KEY_PRESSED, 0, 0,
+				KeyEvent.VK_A, 'a'));
+			assertTrue(calls.isEmpty());
+			assertTrue(registration.isClosed());
+			assertEquals(0, panel.getKeyListeners().length);
+			assertEquals(0, panel.getMouseMotionListeners().length);
+		});
+	}
+
 	private AWTInputEventDispatcher dispatcher() {
-		return new AWTInputEventDispatcher(mock(Display.class), mock(EventService.class));
+		return new AWTInputEventDispatcher(display, mock(EventService.class));
 	}
 
 	private static class MethodCall {
@@ -104,7 +765,7 @@ public class AWTInputEventDispatcherTest {
 
 	private <T> T extractEvent(Class<T> eventClass) {
 		assertFalse(calls.isEmpty());
-		MethodCall call = calls.get(0);
+		MethodCall call = calls.remove(0);
 		assertNotNull(call);
 		assertNotNull(call.args);
         assertEquals(1, call.args.length);
@@ -112,7 +773,6 @@ public class AWTInputEventDispatcherTest {
 		assertTrue(eventClass.isInstance(arg));
 		@SuppressWarnings("unchecked")
 		T typedArg = (T) arg;
-		calls.clear();
 		return typedArg;
 	}
 
@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Panel;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+import org.scijava.input.InputModifiers;
+import org.scijava.input.KeyCode;
+
+/**
+ * Tests {@link AWTInputs}.
+ */
+public class AWTInputsTest {
+
+	@Test
+	public void testModifiers() {
+		InputModifiers mods = AWTInputs.getModifiers(InputEvent.SHIFT_DOWN_MASK |
+			InputEvent.CTRL_DOWN_MASK | InputEvent.BUTTON1_DOWN_MASK);
+		assertTrue(mods.isShiftDown());
+		assertTrue(mods.isCtrlDown());
+		assertTrue(mods.isLeftButtonDown());
+		assertEquals(new InputModifiers(false, false, true, false, true, true,
+			false, false), mods);
+
+		// Irrelevant modifier bits must not affect the result.
+		assertSame(mods, AWTInputs.getModifiers(InputEvent.SHIFT_DOWN_MASK |
+			InputEvent.CTRL_DOWN_MASK | InputEvent.BUTTON1_DOWN_MASK |
+			(1 << 25) | (1 << 20)));
+	}
+
+	@Test
+	public void testKeyCodes() {
+		for (KeyCode keyCode : KeyCode.values()) {
+			assertSame(KeyCode.get(keyCode.getCode()),
+				AWTInputs.getKeyCode(keyCode.getCode()));
+		}
+		assertSame(KeyCode.UNDEFINED, AWTInputs.getKeyCode(-1));
+		assertSame(KeyCode.UNDEFINED, AWTInputs.getKeyCode(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testAllocationFree() {
+		final com.sun.management.ThreadMXBean threads = allocationCounter();
+		final long threadID = Thread.currentThread().getId();
+
+		final int iterations = 1000000;
+		translate(iterations); // warm up
+		final long before = threads.getThreadAllocatedBytes(threadID);
+		final int checksum = translate(iterations);
+		final long allocated = threads.getThreadAllocatedBytes(threadID) - before;
+
+		// Allow for a few bytes of bookkeeping, but not one object per event.
+		assertTrue("Allocated " + allocated + " bytes (" + checksum + ")",
+			allocated < iterations / 100);
+	}
+
+	@Test
+	public void testDispatcherAllocationFree() {
+		final com.sun.management.ThreadMXBean threads = allocationCounter();
+		final long threadID = Thread.currentThread().getId();
+
+		// NB: A consuming sink takes every event before a SciJava event is built,
+		// so what remains is the dispatcher's own translation and bookkeeping.
+		final AWTInputEventDispatcher dispatcher =
+			new AWTInputEventDispatcher(null, null);
+		dispatcher.setPointerHistory(new AWTPointerHistory(64));
+		final int[] sunk = new int[1];
+		dispatcher.addInputSink((type, x, y, modifiers, code) -> {
+			sunk[0]++;
+			return true;
+		});
+		final Panel panel = new Panel();
+		final int mods = InputEvent.SHIFT_DOWN_MASK | InputEvent.BUTTON1_DOWN_MASK;
+		final KeyEvent press = new KeyEvent(panel, KeyEvent.KEY_PRESSED, 0, mods,
+			KeyEvent.VK_A, 'A');
+		final KeyEvent release = new KeyEvent(panel, KeyEvent.KEY_RELEASED, 0,
+			mods, KeyEvent.VK_A, 'A');
+		final MouseEvent move = new MouseEvent(panel, MouseEvent.MOUSE_MOVED, 0,
+			mods, 10, 20, 0, false);
+
+		final int iterations = 1000000;
+		dispatch(dispatcher, press, release, move, iterations); // warm up
+		final long before = threads.getThreadAllocatedBytes(threadID);
+		dispatch(dispatcher, press, release, move, iterations);
+		final long allocated = threads.getThreadAllocatedBytes(threadID) - before;
+
+		assertEquals(6 * iterations, sunk[0]);
+		assertTrue("Allocated " + allocated + " bytes", allocated < iterations /
+			100);
+	}
+
+	private com.sun.management.ThreadMXBean allocationCounter() {
+		assumeTrue(ManagementFactory
+			.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+
+	private void dispatch(final AWTInputEventDispatcher dispatcher,
+		final KeyEvent press, final KeyEvent release, final MouseEvent move,
+		final int iterations)
+	{
+		for (int i = 0; i < iterations; i++) {
+			dispatcher.keyPressed(press);
+			dispatcher.keyReleased(release);
+			dispatcher.mouseMoved(move);
+		}
+	}
+
+	private int translate(int iterations) {
+		int checksum = 0;
+		for (int i = 0; i < iterations; i++) {
+			checksum += System.identityHashCode(AWTInputs.getModifiers(i << 3));
+			checksum += AWTInputs.getKeyCode(i & 0x3ff).ordinal();
+		}
+		return checksum;
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link AWTPngEncoder}.
+ */
+public class AWTPngEncoderTest {
+
+	@Test
+	public void testSingleBlock() throws IOException {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_ARGB, 17, 9);
+		assertRoundTrip(image, new AWTPngEncoder());
+	}
+
+	@Test
+	public void testManyBlocks() throws IOException {
+		// NB: A block size below one row still puts one row in each block.
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_ARGB, 300,
+			200);
+		assertRoundTrip(image, new AWTPngEncoder(Deflater.BEST_SPEED, 1000));
+		assertRoundTrip(image, new AWTPngEncoder(Deflater.DEFAULT_COMPRESSION,
+			1));
+	}
+
+	@Test
+	public void testOtherImageType() throws IOException {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_3BYTE_BGR, 64,
+			48);
+		assertRoundTrip(image, new AWTPngEncoder(Deflater.DEFAULT_COMPRESSION,
+			4096));
+	}
+
+	@Test
+	public void testRows() throws IOException {
+		final BufferedImage image = randomImage(BufferedImage.TYPE_INT_ARGB, 40,
+			30);
+		final byte[] png = new AWTPngEncoder(Deflater.DEFAULT_COMPRESSION, 500)
+			.encode(40, 30, (y, row) -> image.getRGB(0, y, 40, 1, row, 0, 40));
+		assertArrayEquals(new AWTPngEncoder(Deflater.DEFAULT_COMPRESSION, 500)
+			.encode(image), png);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBlockSize() {
+		new AWTPngEncoder(Deflater.DEFAULT_COMPRESSION, 0);
+	}
+
+	// -- Helper methods --
+
+	private static BufferedImage randomImage(final int type, final int w,
+		final int h)
+	{
+		final BufferedImage image = new BufferedImage(w, h, type);
+		final Random r = new Random(0xdecaf);
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				// NB: Mix noise with gradients so that blocks refer back to
+				// earlier rows.
+				final int v = r.nextInt(4) == 0 ? r.nextInt() : (x * y) ^ (x << 16);
+				image.setRGB(x, y, v);
+			}
+		}
+		return image;
+	}
+
+	private static void assertRoundTrip(final BufferedImage image,
+		final AWTPngEncoder encoder) throws IOException
+	{
+		final BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(
+			encoder.encode(image)));
+		assertEquals(image.getWidth(), decoded.getWidth());
+		assertEquals(image.getHeight(), decoded.getHeight());
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				assertEquals(image.getRGB(x, y), decoded.getRGB(x, y));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * SciJava UI components for Java AWT.
+ * %%
+ * Copyright (C) 2010 - 2020 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package org.scijava.ui.awt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Panel;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.display.Display;
+import org.scijava.display.event.window.WinClosedEvent;
+import org.scijava.event.EventService;
+
+/**
+ * Tests {@link AWTRegistration}.
+ */
+public class AWTRegistrationTest {
+
+	private Context context;
+	private EventService eventService;
+
+	@Before
+	public void setUp() {
+		context = new Context(EventService.class);
+		eventService = context.service(EventService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testClose() {
+		final Panel panel = new Panel();
+		final AWTInputEventDispatcher dispatcher =
+			new AWTInputEventDispatcher(display(), eventService);
+		final AWTRegistration registration =
+			dispatcher.attach(panel, true, true);
+		assertEquals(1, panel.getKeyListeners().length);
+		assertEquals(1, panel.getMouseWheelListeners().length);
+		assertFalse(registration.isClosed());
+
+		registration.close();
+		assertTrue(registration.isClosed());
+		assertNull(registration.getComponent());
+		assertEquals(0, panel.getKeyListeners().length);
+		assertEquals(0, panel.getMouseListeners().length);
+		assertEquals(0, panel.getMouseMotionListeners().length);
+		assertEquals(0, panel.getMouseWheelListeners().length);
+
+		// Closing twice does nothing.
+		registration.close();
+	}
+
+	@Test
+	public void testCloseOnWindowClosed() {
+		final Display<?> display = display();
+		final Panel panel = new Panel();
+		final AWTRegistration input =
+			new AWTInputEventDispatcher(display, eventService).attach(panel, true,
+				true);
+		final AWTRegistration other = new AWTInputEventDispatcher(display(),
+			eventService).attach(new Panel(), true, false);
+
+		eventService.publish(new WinClosedEvent(display, null));
+		assertTrue(input.isClosed());
+		assertFalse(other.isClosed());
+		assertEquals(0, panel.getKeyListeners().length);
+		other.close();
+	}
+
+	@Test
+	public void testRoutedCloseOnWindowClosed() {
+		final Display<?> display = display();
+		final AWTEventRouter router = AWTEventRouter.getInstance();
+		final int routes = router.getRouteCount();
+		final AWTRegistration registration = router.attach(new Panel(),
+			new AWTInputEventDispatcher(display, eventService), true, true);
+		assertEquals(routes + 1, router.getRouteCount());
+
+		eventService.publish(new WinClosedEvent(display, null));
+		assertTrue(registration.isClosed());
+		assertEquals(routes, router.getRouteCount());
+	}
+
+	/**
+	 * Tests that opening and closing many displays leaves neither listeners nor
+	 * displays behind.
+	 */
+	@Test
+	public void testNoLeaks() {
+		final int subscribers = eventService.getSubscribers(WinClosedEvent.class)
+			.size();
+		final AWTEventRouter router = AWTEventRouter.getInstance();
+		final int routes = router.getRouteCount();
+		final List<WeakReference<Display<?>>> displays = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			final Display<?> display = display();
+			final Panel panel = new Panel();
+			new AWTInputEventDispatcher(display, eventService).attach(panel, true,
+				true);
+			router.attach(new Panel(), new AWTInputEventDispatcher(display,
+				eventService), true, true);
+			eventService.publish(new WinClosedEvent(display, null));
+			assertEquals(0, panel.getKeyListeners().length);
+			displays.add(new WeakReference<>(display));
+		}
+		assertEquals(subscribers, eventService.getSubscribers(WinClosedEvent.class)
+			.size());
+		assertEquals(routes, router.getRouteCount());
+
+		for (int i = 0; i < 10 && !cleared(displays); i++) {
+			System.gc();
+		}
+		assertTrue(cleared(displays));
+	}
+
+	// -- Helper methods --
+
+	private static boolean cleared(final List<WeakReference<Display<?>>> refs) {
+		for (final WeakReference<Display<?>> ref : refs) {
+			if (ref.get() != null) return false;
+		}
+		return true;
+	}
+
+	private static Display<?> display() {
+		return (Display<?>) Proxy.newProxyInstance(Display.class.getClassLoader(),
+			new Class<?>[] { Display.class }, (obj, method, args) -> {
+				if (method.getName().equals("equals")) return obj == args[0];
+				if (method.getName().equals("hashCode")) {
+					return System.identityHashCode(obj);
+				}
+				return null;
+			});
+	}
+
+}